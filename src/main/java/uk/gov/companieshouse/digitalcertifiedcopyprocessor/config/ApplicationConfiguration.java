@@ -1,13 +1,15 @@
 package uk.gov.companieshouse.digitalcertifiedcopyprocessor.config;
 
-import consumer.deserialization.AvroDeserializer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
@@ -17,16 +19,19 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
-import uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer.InvalidMessageRouter;
-import uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer.MessageFlags;
+import org.springframework.kafka.transaction.KafkaTransactionManager;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer.OffsetTracker;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka.ItemOrderedCertifiedCopyAvroDeserializer;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka.ItemOrderedCertifiedCopyAvroSerializer;
+import uk.gov.companieshouse.documentsigning.SignDigitalDocument;
 import uk.gov.companieshouse.logging.Logger;
 import uk.gov.companieshouse.logging.LoggerFactory;
 import uk.gov.companieshouse.itemorderedcertifiedcopy.ItemOrderedCertifiedCopy;
-import uk.gov.companieshouse.kafka.serialization.SerializerFactory;
-import uk.gov.companieshouse.kafka.exceptions.SerializationException;
-import uk.gov.companieshouse.logging.util.DataMap;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.DigitalCertifiedCopyProcessorApplication.APPLICATION_NAME_SPACE;
 
@@ -35,49 +40,48 @@ import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.DigitalCertifi
 public class ApplicationConfiguration {
 
     @Bean
-    public ConsumerFactory<String, ItemOrderedCertifiedCopy> consumerFactory(@Value("${spring.kafka.bootstrap-servers}") String bootstrapServers) {
-        return new DefaultKafkaConsumerFactory<>(
-                Map.of(
-                        ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
-                        ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class,
-                        ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class,
-                        ErrorHandlingDeserializer.KEY_DESERIALIZER_CLASS, StringDeserializer.class,
-                        ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, AvroDeserializer.class,
-                        ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest",
-                        ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false"),
+    public ConsumerFactory<String, ItemOrderedCertifiedCopy> consumerFactory(@Value("${spring.kafka.bootstrap-servers}") String bootstrapServers,
+                                                                            @Value("${kafka.transactions.enabled:false}") boolean transactional) {
+        return consumerFactory(bootstrapServers, transactional, new ItemOrderedCertifiedCopyAvroDeserializer(), Map.of());
+    }
+
+    private static ConsumerFactory<String, ItemOrderedCertifiedCopy> consumerFactory(
+            final String bootstrapServers,
+            final boolean transactional,
+            final ItemOrderedCertifiedCopyAvroDeserializer deserializer,
+            final Map<String, Object> additionalConfigs) {
+        final Map<String, Object> configs = new HashMap<>(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+                ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class,
+                ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class,
+                ErrorHandlingDeserializer.KEY_DESERIALIZER_CLASS, StringDeserializer.class,
+                ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, ItemOrderedCertifiedCopyAvroDeserializer.class,
+                ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest",
+                ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false",
+                ConsumerConfig.ISOLATION_LEVEL_CONFIG, transactional ? "read_committed" : "read_uncommitted"));
+        configs.putAll(additionalConfigs);
+        return new DefaultKafkaConsumerFactory<>(configs,
                 new StringDeserializer(),
-                new ErrorHandlingDeserializer<>(new AvroDeserializer<>(ItemOrderedCertifiedCopy.class)));
+                new ErrorHandlingDeserializer<>(deserializer));
     }
 
     @Bean
     public ProducerFactory<String, ItemOrderedCertifiedCopy> producerFactory(
             @Value("${spring.kafka.bootstrap-servers}") String bootstrapServers,
-            MessageFlags messageFlags,
-            @Value("${invalid_message_topic}") String invalidMessageTopic) {
-        return new DefaultKafkaProducerFactory<>(
+            @Value("${kafka.transactions.enabled:false}") boolean transactional,
+            @Value(KafkaConfig.TRANSACTION_ID_PREFIX) String transactionIdPrefix) {
+        final var factory = new DefaultKafkaProducerFactory<String, ItemOrderedCertifiedCopy>(
                 Map.of(
                         ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
                         ProducerConfig.ACKS_CONFIG, "all",
                         ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
-                        ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
-                        ProducerConfig.INTERCEPTOR_CLASSES_CONFIG, InvalidMessageRouter.class.getName(),
-                        "message.flags", messageFlags,
-                        "invalid.message.topic", invalidMessageTopic),
+                        ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ItemOrderedCertifiedCopyAvroSerializer.class),
                 new StringSerializer(),
-                (topic, data) -> {
-                    try {
-                        return new SerializerFactory().getSpecificRecordSerializer(ItemOrderedCertifiedCopy.class)
-                                .toBinary(data); //creates a leading space
-                    } catch (SerializationException e) {
-                        var dataMap = new DataMap.Builder()
-                                .topic(topic)
-                                .kafkaMessage(data.toString())
-                                .build();
-                        getLogger().error("Caught SerializationException serializing kafka message.",
-                                dataMap.getLogMap());
-                        throw new RuntimeException(e);
-                    }
-                });
+                new ItemOrderedCertifiedCopyAvroSerializer());
+        if (transactional) {
+            factory.setTransactionIdPrefix(transactionIdPrefix + "retry-");
+        }
+        return factory;
     }
 
     @Bean
@@ -85,16 +89,125 @@ public class ApplicationConfiguration {
         return new KafkaTemplate<>(producerFactory);
     }
 
+    /**
+     * The producer with which messages that could not be deserialized are republished to the invalid message topic,
+     * as the bytes they were consumed as.
+     */
+    @Bean
+    public ProducerFactory<String, byte[]> rawProducerFactory(
+            @Value("${spring.kafka.bootstrap-servers}") String bootstrapServers,
+            @Value("${kafka.transactions.enabled:false}") boolean transactional,
+            @Value(KafkaConfig.TRANSACTION_ID_PREFIX) String transactionIdPrefix) {
+        final var factory = new DefaultKafkaProducerFactory<String, byte[]>(
+                Map.of(
+                        ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+                        ProducerConfig.ACKS_CONFIG, "all",
+                        ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                        ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class),
+                new StringSerializer(),
+                new ByteArraySerializer());
+        if (transactional) {
+            factory.setTransactionIdPrefix(transactionIdPrefix + "raw-");
+        }
+        return factory;
+    }
+
+    @Bean
+    public KafkaTemplate<String, byte[]> rawKafkaTemplate(ProducerFactory<String, byte[]> rawProducerFactory) {
+        return new KafkaTemplate<>(rawProducerFactory);
+    }
+
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, ItemOrderedCertifiedCopy> kafkaListenerContainerFactory(ConsumerFactory<String, ItemOrderedCertifiedCopy> consumerFactory,
-                                                                                                 @Value("${consumer.concurrency}") Integer concurrency) {
+                                                                                                 @Value("${consumer.concurrency}") Integer concurrency,
+                                                                                                 @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                                                                                 @Value("${consumer.ack_mode:RECORD}") ContainerProperties.AckMode ackMode,
+                                                                                                 @Value("${consumer.ack_count:100}") int ackCount,
+                                                                                                 @Value("${consumer.ack_time_ms:1000}") long ackTime) {
         ConcurrentKafkaListenerContainerFactory<String, ItemOrderedCertifiedCopy> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory);
         factory.setConcurrency(concurrency);
-        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.RECORD);
+        factory.getContainerProperties().setAckMode(commitPolicy(ackMode));
+        factory.getContainerProperties().setAckCount(ackCount);
+        factory.getContainerProperties().setAckTime(ackTime);
+        // Once paused while an upstream API is unavailable, no more records from the last poll are processed.
+        factory.getContainerProperties().setPauseImmediate(true);
+        if (virtualThreads) {
+            factory.getContainerProperties().setListenerTaskExecutor(virtualThreadExecutor("record-listener-"));
+        }
+        return factory;
+    }
+
+    /**
+     * With <code>consumer.batch.reuse_records</code> enabled, the batch consumer gets a consumer of its own that
+     * decodes messages into the records of earlier polls. This is safe only because the batch listener does not
+     * return until it has finished with every record in the batch. Its factory is given the batch size as
+     * <code>max.poll.records</code>, as the deserializer is only configured with the configs of the factory, not with
+     * the properties of the listener, and sizes its ring of records from it.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, ItemOrderedCertifiedCopy> batchKafkaListenerContainerFactory(ConsumerFactory<String, ItemOrderedCertifiedCopy> consumerFactory,
+                                                                                                      @Value("${spring.kafka.bootstrap-servers}") String bootstrapServers,
+                                                                                                      @Value("${consumer.concurrency}") Integer concurrency,
+                                                                                                      @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                                                                                      @Value("${kafka.transactions.enabled:false}") boolean transactional,
+                                                                                                      @Value("${consumer.batch.reuse_records:false}") boolean reuseRecords,
+                                                                                                      @Value("${consumer.batch.max_records:500}") int maxRecords,
+                                                                                                      ProducerFactory<String, SignDigitalDocument> signProducerFactory,
+                                                                                                      OffsetTracker offsetTracker) {
+        ConcurrentKafkaListenerContainerFactory<String, ItemOrderedCertifiedCopy> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(reuseRecords
+                ? consumerFactory(bootstrapServers, transactional, new ItemOrderedCertifiedCopyAvroDeserializer(true),
+                        Map.of(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxRecords))
+                : consumerFactory);
+        factory.setConcurrency(concurrency);
+        factory.setBatchListener(true);
+        // The completed offsets tracked for a partition are forgotten when it is revoked or assigned.
+        factory.getContainerProperties().setConsumerRebalanceListener(offsetTracker);
+        if (transactional) {
+            // The offsets of each batch are committed in the transaction the messages produced for it are sent in.
+            factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+            factory.getContainerProperties().setKafkaAwareTransactionManager(
+                    new KafkaTransactionManager<>(signProducerFactory));
+        } else {
+            // The batch consumer commits the offsets of each partition itself.
+            factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        }
+        if (virtualThreads) {
+            factory.getContainerProperties().setListenerTaskExecutor(virtualThreadExecutor("batch-listener-"));
+        }
         return factory;
     }
 
+    /**
+     * The executor on which the upstream lookups for each message are run. With virtual threads enabled every lookup
+     * gets its own virtual thread, so the number in flight is bounded by the batch size rather than by the pool size.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService messageProcessingExecutor(@Value("${consumer.parallelism:10}") int parallelism,
+                                                     @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        return virtualThreads ? Executors.newVirtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(parallelism);
+    }
+
+    /**
+     * Only the ack modes in which the container commits offsets itself are supported. These only ever commit the
+     * offsets of records the listener has returned from, and the listener does not return until the resulting
+     * {@link uk.gov.companieshouse.documentsigning.SignDigitalDocument} message has been acknowledged.
+     */
+    private static ContainerProperties.AckMode commitPolicy(final ContainerProperties.AckMode ackMode) {
+        return switch (ackMode) {
+            case RECORD, BATCH, COUNT, TIME, COUNT_TIME -> ackMode;
+            default -> throw new IllegalArgumentException("Unsupported consumer.ack_mode " + ackMode
+                    + ", must be one of RECORD, BATCH, COUNT, TIME or COUNT_TIME.");
+        };
+    }
+
+    private static AsyncTaskExecutor virtualThreadExecutor(final String threadNamePrefix) {
+        final var executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
     @Bean
     Logger getLogger() {
         return LoggerFactory.getLogger(APPLICATION_NAME_SPACE);
@@ -9,6 +9,7 @@ import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 import uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka.SignDigitalDocumentAvroSerializer;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka.TransactionalOutputSerializer;
 import uk.gov.companieshouse.documentsigning.SignDigitalDocument;
 
 import java.util.HashMap;
@@ -17,22 +18,65 @@ import java.util.Map;
 @Configuration
 public class KafkaConfig {
 
+    /**
+     * The prefix of the transactional ids of every producer, unique to each instance so that no two instances fence
+     * one another off.
+     */
+    static final String TRANSACTION_ID_PREFIX =
+            "${kafka.transactions.id_prefix:digital-certified-copy-processor-${HOSTNAME:local}-}";
+
+    /**
+     * Builds the producer for <code>sign-digital-document</code> messages. Its batching, compression and delivery
+     * guarantees are bound from the <code>kafka.producer.*</code> properties, the defaults of which are those of the
+     * Kafka client itself. Idempotence must be left enabled when transactions are, in which case the producer also
+     * sends the messages republished while processing a batch, so that they join the transaction of the batch.
+     */
     @Bean
     public ProducerFactory<String, SignDigitalDocument> signProducerFactory(
-            @Value("${spring.kafka.bootstrap-servers}" ) final String bootstrapServers) {
+            @Value("${spring.kafka.bootstrap-servers}" ) final String bootstrapServers,
+            @Value("${kafka.transactions.enabled:false}") final boolean transactional,
+            @Value(TRANSACTION_ID_PREFIX) final String transactionIdPrefix,
+            @Value("${kafka.producer.linger_ms:0}") final int lingerMillis,
+            @Value("${kafka.producer.batch_size:16384}") final int batchSize,
+            @Value("${kafka.producer.compression_type:none}") final String compressionType,
+            @Value("${kafka.producer.max_in_flight_requests:5}") final int maxInFlightRequests,
+            @Value("${kafka.producer.enable_idempotence:true}") final boolean idempotent,
+            @Value("${kafka.producer.acks:all}") final String acks) {
         final Map<String, Object> config = new HashMap<>();
         config.put(
                 ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG,
                 StringSerializer.class);
-        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, SignDigitalDocumentAvroSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
+                transactional ? TransactionalOutputSerializer.class : SignDigitalDocumentAvroSerializer.class);
         config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        return new DefaultKafkaProducerFactory<>(config);
+        config.put(ProducerConfig.LINGER_MS_CONFIG, lingerMillis);
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        config.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, maxInFlightRequests);
+        config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, idempotent);
+        config.put(ProducerConfig.ACKS_CONFIG, acks);
+        final var factory = new DefaultKafkaProducerFactory<String, SignDigitalDocument>(config);
+        if (transactional) {
+            factory.setTransactionIdPrefix(transactionIdPrefix + "sign-");
+        }
+        return factory;
     }
 
     @Bean
     public KafkaTemplate<String, SignDigitalDocument> signKafkaTemplate(
-            @Value("${spring.kafka.bootstrap-servers}" ) final String bootstrapServers) {
-        return new KafkaTemplate<>(signProducerFactory(bootstrapServers));
+            final ProducerFactory<String, SignDigitalDocument> signProducerFactory) {
+        return new KafkaTemplate<>(signProducerFactory);
+    }
+
+    /**
+     * Sends the messages republished while processing a batch within a Kafka transaction through the producer
+     * factory bound to that transaction, whose producer serializes values of any type it is given.
+     */
+    @Bean
+    @SuppressWarnings("unchecked")
+    public KafkaTemplate<String, Object> transactionalOutputKafkaTemplate(
+            final ProducerFactory<String, SignDigitalDocument> signProducerFactory) {
+        return new KafkaTemplate<>((ProducerFactory<String, Object>) (ProducerFactory<String, ?>) signProducerFactory);
     }
 
     @Bean
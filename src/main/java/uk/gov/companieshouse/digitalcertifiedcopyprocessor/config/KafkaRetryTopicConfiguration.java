@@ -0,0 +1,57 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.retrytopic.DeadLetterPublishingRecovererFactory;
+import org.springframework.kafka.retrytopic.RetryTopicConfigurationSupport;
+import org.springframework.util.backoff.FixedBackOff;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer.InvalidMessageRecoverer;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.UpstreamUnavailableException;
+
+import java.util.function.Consumer;
+
+/**
+ * Configures the non-blocking retries of the main consumer so that messages failing with anything other than a
+ * {@link uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException} are republished to the
+ * invalid message topic. Messages that could not be deserialized are republished there as they were consumed.<br>
+ * <br>
+ * A message that failed only because an upstream API was {@link UpstreamUnavailableException unavailable} is not at
+ * fault, so it uses up none of its attempts: the consumer is instead rewound to it, for it to be redelivered every
+ * <code>upstream.redelivery_interval_ms</code> for as long as the API remains unavailable. The
+ * {@link uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer.UpstreamPauseController} meanwhile pauses the
+ * consumer, so that it is not redelivered until the API has had a chance to recover.
+ */
+@Configuration
+public class KafkaRetryTopicConfiguration extends RetryTopicConfigurationSupport {
+
+    private final KafkaTemplate<String, byte[]> rawKafkaTemplate;
+    private final String invalidMessageTopic;
+    private final long upstreamRedeliveryIntervalMillis;
+
+    public KafkaRetryTopicConfiguration(KafkaTemplate<String, byte[]> rawKafkaTemplate,
+                                        @Value("${invalid_message_topic}") String invalidMessageTopic,
+                                        @Value("${upstream.redelivery_interval_ms:1000}")
+                                        long upstreamRedeliveryIntervalMillis) {
+        this.rawKafkaTemplate = rawKafkaTemplate;
+        this.invalidMessageTopic = invalidMessageTopic;
+        this.upstreamRedeliveryIntervalMillis = upstreamRedeliveryIntervalMillis;
+    }
+
+    @Override
+    protected void configureBlockingRetries(BlockingRetriesConfigurer blockingRetries) {
+        blockingRetries
+                .retryOn(UpstreamUnavailableException.class)
+                .backOff(new FixedBackOff(upstreamRedeliveryIntervalMillis, FixedBackOff.UNLIMITED_ATTEMPTS));
+    }
+
+    @Override
+    protected Consumer<DeadLetterPublishingRecovererFactory> configureDeadLetterPublishingContainerFactory() {
+        return factory -> {
+            factory.setDeadLetterPublisherCreator((templateResolver, destinationResolver) ->
+                    new InvalidMessageRecoverer(templateResolver, rawKafkaTemplate, destinationResolver,
+                            invalidMessageTopic));
+            factory.setHeadersFunction(InvalidMessageRecoverer::classificationHeaders);
+        };
+    }
+}
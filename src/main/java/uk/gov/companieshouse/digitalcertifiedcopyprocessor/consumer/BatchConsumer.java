@@ -0,0 +1,338 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.retrytopic.RetryTopicHeaders;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.NonRetryableException;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.UpstreamUnavailableException;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.KafkaService;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.KafkaServiceParameters;
+import uk.gov.companieshouse.itemorderedcertifiedcopy.ItemOrderedCertifiedCopy;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.util.DataMap;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Consumes batches of messages from the configured main Kafka topic, processing the records in each batch
+ * concurrently. Only active when <code>consumer.batch.enabled</code> is <code>true</code>, in which case the
+ * {@link Consumer main consumer} is left to consume the retry topic only.<br>
+ * <br>
+ * Records sharing a key (order number) on the same partition are processed in offset order, while records with
+ * different keys are processed concurrently, so parallelism is not capped by the number of partitions. Each record
+ * that fails is republished on its own, with its original headers and value bytes, to the retry topic if a
+ * {@link RetryableException} was thrown, otherwise to the invalid message topic. A record that could not be
+ * deserialized is never retried, but republished to the invalid message topic straight away. Once the batch has
+ * been handled, the offsets committed for each partition only move past the run of records that were completely
+ * handled; the consumer is rewound to the first record that was not, so that it is redelivered. A record that failed
+ * only because an upstream API was {@link UpstreamUnavailableException unavailable} is not republished but left to be
+ * redelivered likewise, once the {@link UpstreamPauseController} resumes the consumer, and so are the records after it
+ * with the same key, which are held back unprocessed rather than overtake it.<br>
+ * <br>
+ * When <code>kafka.transactions.enabled</code> is <code>true</code>, each batch is instead processed within a Kafka
+ * transaction begun by the container. The messages produced for the batch, republished ones included, are all sent
+ * from the listener thread by the producer bound to that transaction, so that they join it, and the container commits
+ * the offsets of the whole batch in the same transaction.
+ */
+@Component
+@ConditionalOnProperty(name = "consumer.batch.enabled", havingValue = "true")
+public class BatchConsumer {
+
+    private static final String RETRY_TOPIC_SUFFIX = "-retry";
+    private static final String BATCH_LISTENER_ID_SUFFIX = "-batch";
+
+    /** The attempt number a record republished to the retry topic from here has reached. */
+    private static final int FIRST_RETRY_ATTEMPT = 2;
+
+    private final KafkaService service;
+    private final KafkaTemplate<String, ItemOrderedCertifiedCopy> kafkaTemplate;
+    private final KafkaTemplate<String, byte[]> rawKafkaTemplate;
+    private final KafkaTemplate<String, Object> transactionalOutputKafkaTemplate;
+    private final KeyOrderedProcessor<String, ItemOrderedCertifiedCopy> processor = new KeyOrderedProcessor<>();
+    private final OffsetTracker offsetTracker;
+    private final KafkaListenerEndpointRegistry registry;
+    private final Logger logger;
+    private final String recordListenerId;
+    private final String retryTopic;
+    private final String invalidMessageTopic;
+    private final long backoffDelay;
+    private final boolean transactional;
+
+    public BatchConsumer(KafkaService service,
+                         KafkaTemplate<String, ItemOrderedCertifiedCopy> kafkaTemplate,
+                         KafkaTemplate<String, byte[]> rawKafkaTemplate,
+                         KafkaTemplate<String, Object> transactionalOutputKafkaTemplate,
+                         OffsetTracker offsetTracker,
+                         KafkaListenerEndpointRegistry registry,
+                         Logger logger,
+                         @Value("${consumer.group_id}") String recordListenerId,
+                         @Value("${consumer.topic}") String topic,
+                         @Value("${invalid_message_topic}") String invalidMessageTopic,
+                         @Value("${consumer.backoff_delay}") long backoffDelay,
+                         @Value("${kafka.transactions.enabled:false}") boolean transactional) {
+        this.service = service;
+        this.kafkaTemplate = kafkaTemplate;
+        this.rawKafkaTemplate = rawKafkaTemplate;
+        this.transactionalOutputKafkaTemplate = transactionalOutputKafkaTemplate;
+        this.offsetTracker = offsetTracker;
+        this.registry = registry;
+        this.logger = logger;
+        this.recordListenerId = recordListenerId;
+        this.retryTopic = topic + RETRY_TOPIC_SUFFIX;
+        this.invalidMessageTopic = invalidMessageTopic;
+        this.backoffDelay = backoffDelay;
+        this.transactional = transactional;
+    }
+
+    /**
+     * Consume a batch of records from the main Kafka topic.
+     *
+     * @param records       the records returned by a single poll of the main topic
+     * @param kafkaConsumer the underlying Kafka consumer, used to commit and rewind each partition
+     */
+    @KafkaListener(
+            id = "${consumer.group_id}" + BATCH_LISTENER_ID_SUFFIX,
+            containerFactory = "batchKafkaListenerContainerFactory",
+            topics = "${consumer.topic}",
+            groupId = "${consumer.group_id}",
+            autoStartup = "true",
+            properties = {
+                    "max.poll.records=${consumer.batch.max_records:500}",
+                    "fetch.min.bytes=${consumer.batch.min_bytes:1}",
+                    "fetch.max.wait.ms=${consumer.batch.max_wait_ms:500}"
+            }
+    )
+    public void consume(List<ConsumerRecord<String, ItemOrderedCertifiedCopy>> records,
+                        org.apache.kafka.clients.consumer.Consumer<?, ?> kafkaConsumer) {
+        logger.debug("Processing batch of " + records.size() + " kafka messages.");
+        if (transactional) {
+            consumeInTransaction(records);
+        } else {
+            consumeTrackingOffsets(records, kafkaConsumer);
+        }
+        logger.debug("Processed batch of " + records.size() + " kafka messages.");
+    }
+
+    private void consumeTrackingOffsets(final List<ConsumerRecord<String, ItemOrderedCertifiedCopy>> records,
+                                        final org.apache.kafka.clients.consumer.Consumer<?, ?> kafkaConsumer) {
+        // Records completed in an earlier delivery of this batch are not processed again.
+        final var pending = records.stream()
+                .filter(consumerRecord -> !offsetTracker.isCompleted(consumerRecord))
+                .toList();
+        final List<CompletableFuture<Void>> outcomes = processor.process(pending, consumerRecord ->
+                process(consumerRecord, service::processMessageAsync), UpstreamUnavailableException.class::isInstance);
+
+        awaitRepublished(republishFailures(pending, outcomes));
+
+        final var position = offsetTracker.position(records);
+        if (!position.offsets().isEmpty()) {
+            kafkaConsumer.commitSync(position.offsets());
+        }
+        position.rewindTo().forEach((topicPartition, offset) -> {
+            logger.info("Rewinding " + topicPartition + " to offset " + offset + " to redeliver incomplete messages.");
+            kafkaConsumer.seek(topicPartition, offset);
+        });
+    }
+
+    /**
+     * Processes the batch within the transaction the container has begun for it, in which the container also
+     * commits the offsets of the whole batch. Should any record neither be processed nor republished, the
+     * transaction is rolled back by throwing, and the whole batch redelivered.
+     */
+    private void consumeInTransaction(final List<ConsumerRecord<String, ItemOrderedCertifiedCopy>> records) {
+        final var listenerThread = new ListenerThreadExecutor();
+        try {
+            final List<CompletableFuture<Void>> outcomes = processor.process(records,
+                    consumerRecord -> process(consumerRecord,
+                            parameters -> service.processMessageAsync(parameters, listenerThread)),
+                    UpstreamUnavailableException.class::isInstance);
+            listenerThread.runUntilComplete(CompletableFuture.allOf(outcomes.toArray(CompletableFuture[]::new)));
+            if (outcomes.stream().anyMatch(BatchConsumer::isUpstreamUnavailable)) {
+                throw new RetryableException("Upstream API unavailable processing batch of " + records.size()
+                        + " kafka messages, rolling back for it to be redelivered.");
+            }
+
+            final var republished = republishFailures(records, outcomes);
+            awaitRepublished(republished);
+            if (republished.stream().anyMatch(CompletableFuture::isCompletedExceptionally)) {
+                throw new RetryableException("Unable to republish every failed message in batch of "
+                        + records.size() + " kafka messages, rolling back.");
+            }
+        } finally {
+            // Either committed by the container, or to be processed in full again.
+            offsetTracker.forget(records);
+        }
+    }
+
+    private List<CompletableFuture<?>> republishFailures(
+            final List<ConsumerRecord<String, ItemOrderedCertifiedCopy>> records,
+            final List<CompletableFuture<Void>> outcomes) {
+        final List<CompletableFuture<?>> republished = new ArrayList<>();
+        for (int index = 0; index < records.size(); index++) {
+            final var consumerRecord = records.get(index);
+            try {
+                outcomes.get(index).join();
+                offsetTracker.markCompleted(consumerRecord);
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof UpstreamUnavailableException) {
+                    logger.info("Upstream API unavailable processing message, it will be redelivered: "
+                            + ex.getCause().getMessage(), getLogMap(consumerRecord));
+                } else {
+                    republish(consumerRecord, ex.getCause()).ifPresent(republished::add);
+                }
+            }
+        }
+        return republished;
+    }
+
+    private static boolean isUpstreamUnavailable(final CompletableFuture<Void> outcome) {
+        return outcome.state() == Future.State.FAILED
+                && outcome.exceptionNow() instanceof UpstreamUnavailableException;
+    }
+
+    /**
+     * Waits until every failed record is either safely on its retry or invalid topic, or known not to be.
+     */
+    private static void awaitRepublished(final List<CompletableFuture<?>> republished) {
+        CompletableFuture.allOf(republished.toArray(CompletableFuture[]::new))
+                .handle((ignored, ex) -> null)
+                .join();
+    }
+
+    /**
+     * The main consumer is not started against the main topic in batch mode, but its retry topic and dead letter
+     * topic listeners must still run.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    void startRetryTopicListeners() {
+        final var batchListenerId = recordListenerId + BATCH_LISTENER_ID_SUFFIX;
+        registry.getListenerContainerIds().stream()
+                .filter(id -> id.startsWith(recordListenerId))
+                .filter(id -> !id.equals(recordListenerId) && !id.equals(batchListenerId))
+                .map(registry::getListenerContainer)
+                .forEach(MessageListenerContainer::start);
+    }
+
+    private CompletableFuture<Void> process(
+            final ConsumerRecord<String, ItemOrderedCertifiedCopy> consumerRecord,
+            final Function<KafkaServiceParameters, CompletableFuture<Void>> processing) {
+        if (consumerRecord.value() == null) {
+            throw new NonRetryableException("Unable to deserialise message at offset " + consumerRecord.offset()
+                    + " of partition " + consumerRecord.partition() + ".");
+        }
+        return processing.apply(new KafkaServiceParameters(consumerRecord.value()));
+    }
+
+    private Optional<CompletableFuture<?>> republish(
+            final ConsumerRecord<String, ItemOrderedCertifiedCopy> consumerRecord, final Throwable cause) {
+        if (consumerRecord.value() == null) {
+            final var deserializationFailure = DeserializationFailures.of(consumerRecord);
+            if (deserializationFailure.isPresent()) {
+                return Optional.of(whenRepublished(
+                        republishUndeserialisable(consumerRecord, deserializationFailure.get()), consumerRecord));
+            }
+            // Redelivering an empty message would not help, and would hold up the rest of its partition.
+            logger.error("Unable to republish empty message, discarding it: " + cause.getMessage(),
+                    getLogMap(consumerRecord));
+            offsetTracker.markCompleted(consumerRecord);
+            return Optional.empty();
+        }
+        final var classification = FailureClassification.of(cause);
+        final var retryable = classification == FailureClassification.RETRYABLE;
+        final ProducerRecord<String, ItemOrderedCertifiedCopy> republishedRecord = retryable
+                ? buildRetryRecord(consumerRecord)
+                : new ProducerRecord<>(invalidMessageTopic, null, consumerRecord.key(), consumerRecord.value(),
+                        consumerRecord.headers());
+        republishedRecord.headers().add(classification.toHeader());
+        logger.error((retryable ? "Retryable" : "Non-retryable") + " error processing message, republishing to "
+                + republishedRecord.topic() + ": " + cause.getMessage(), getLogMap(consumerRecord));
+        return Optional.of(whenRepublished(send(kafkaTemplate, republishedRecord), consumerRecord));
+    }
+
+    /**
+     * Republishes a message that could not be deserialized straight to the invalid message topic, as the bytes it was
+     * consumed as. Retrying it would only fail the same way.
+     */
+    private CompletableFuture<?> republishUndeserialisable(
+            final ConsumerRecord<String, ItemOrderedCertifiedCopy> consumerRecord,
+            final DeserializationException failure) {
+        final var republishedRecord = new ProducerRecord<>(invalidMessageTopic, null, consumerRecord.key(),
+                failure.getData(), consumerRecord.headers());
+        republishedRecord.headers().remove(SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER);
+        republishedRecord.headers().add(FailureClassification.NON_RETRYABLE.toHeader());
+        republishedRecord.headers().add(DeserializationFailures.toHeader(failure));
+        logger.error("Unable to deserialise message, republishing it to " + invalidMessageTopic + ": "
+                + failure.getMessage(), getLogMap(consumerRecord));
+        return send(rawKafkaTemplate, republishedRecord);
+    }
+
+    /**
+     * Within a transaction, republishes through the producer bound to it rather than the given template, so that the
+     * message is rolled back along with the rest of the batch.
+     */
+    private <V> CompletableFuture<?> send(final KafkaTemplate<String, V> template,
+                                          final ProducerRecord<String, V> producerRecord) {
+        if (!transactional) {
+            return template.send(producerRecord);
+        }
+        return transactionalOutputKafkaTemplate.send(new ProducerRecord<>(producerRecord.topic(),
+                producerRecord.partition(), producerRecord.key(), producerRecord.value(), producerRecord.headers()));
+    }
+
+    private CompletableFuture<?> whenRepublished(final CompletableFuture<?> send,
+                                                 final ConsumerRecord<String, ItemOrderedCertifiedCopy> consumerRecord) {
+        return send.whenComplete((result, ex) -> {
+            if (ex == null) {
+                offsetTracker.markCompleted(consumerRecord);
+            } else {
+                logger.error("Unable to republish message, it will be redelivered: " + ex.getMessage(),
+                        getLogMap(consumerRecord));
+            }
+        });
+    }
+
+    /**
+     * Builds the retry topic record, carrying the same attempt and backoff headers the non-blocking retry
+     * machinery would have added had the record failed in the main consumer.
+     */
+    private ProducerRecord<String, ItemOrderedCertifiedCopy> buildRetryRecord(
+            final ConsumerRecord<String, ItemOrderedCertifiedCopy> consumerRecord) {
+        final var retryRecord = new ProducerRecord<>(retryTopic, null, consumerRecord.key(), consumerRecord.value(),
+                consumerRecord.headers());
+        retryRecord.headers().add(RetryTopicHeaders.DEFAULT_HEADER_ATTEMPTS,
+                ByteBuffer.allocate(Integer.BYTES).putInt(FIRST_RETRY_ATTEMPT).array());
+        retryRecord.headers().add(RetryTopicHeaders.DEFAULT_HEADER_BACKOFF_TIMESTAMP,
+                BigInteger.valueOf(System.currentTimeMillis() + backoffDelay).toByteArray());
+        return retryRecord;
+    }
+
+    private Map<String, Object> getLogMap(final ConsumerRecord<String, ItemOrderedCertifiedCopy> consumerRecord) {
+        return new DataMap.Builder()
+                .topic(consumerRecord.topic())
+                .partition(consumerRecord.partition())
+                .offset(consumerRecord.offset())
+                .build()
+                .getLogMap();
+    }
+}
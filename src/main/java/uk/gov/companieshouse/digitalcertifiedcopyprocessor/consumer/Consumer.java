@@ -13,21 +13,21 @@ import uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.KafkaServiceP
 import uk.gov.companieshouse.itemorderedcertifiedcopy.ItemOrderedCertifiedCopy;
 
 /**
- * Consumes messages from the configured main Kafka topic.
+ * Consumes messages from the configured main Kafka topic. In batch mode the main topic is consumed by the
+ * {@link BatchConsumer batch consumer} instead, and this consumer only handles the retry topic.
  */
 @Component
 public class Consumer {
 
     private final KafkaService service;
-    private final MessageFlags messageFlags;
 
-    public Consumer(KafkaService service, MessageFlags messageFlags) {
+    public Consumer(KafkaService service) {
         this.service = service;
-        this.messageFlags = messageFlags;
     }
 
     /**
-     * Consume a message from the main Kafka topic.
+     * Consume a message from the main Kafka topic. Where the message cannot be processed, the exception thrown
+     * decides where the {@link InvalidMessageRecoverer} republishes it.
      *
      * @param message A message containing a payload.
      */
@@ -36,7 +36,7 @@ public class Consumer {
             containerFactory = "kafkaListenerContainerFactory",
             topics = "${consumer.topic}",
             groupId = "${consumer.group_id}",
-            autoStartup = "true"
+            autoStartup = "#{!${consumer.batch.enabled:false}}"
     )
     @RetryableTopic(
             attempts = "${consumer.max_attempts}",
@@ -49,11 +49,6 @@ public class Consumer {
             kafkaTemplate = "kafkaTemplate"
     )
     public void consume(Message<ItemOrderedCertifiedCopy> message) {
-        try {
-            service.processMessage(new KafkaServiceParameters(message.getPayload()));
-        } catch (RetryableException e) {
-            messageFlags.setRetryable(true);
-            throw e;
-        }
+        service.processMessage(new KafkaServiceParameters(message.getPayload()));
     }
 }
@@ -0,0 +1,62 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Identifies the records whose values could not be deserialized (poison pills). These are never retried: their
+ * original bytes are republished straight to the invalid message topic, with the {@link #HEADER deserialization
+ * failure header} recording why they could not be read.
+ */
+public final class DeserializationFailures {
+
+    /** The header describing why a message republished to the invalid message topic could not be deserialized. */
+    public static final String HEADER = "deserialization_failure";
+
+    private static final LogAccessor LOGGER = new LogAccessor(DeserializationFailures.class);
+
+    private DeserializationFailures() {
+    }
+
+    /**
+     * @param consumerRecord a record consumed through the <code>ErrorHandlingDeserializer</code>
+     * @return the exception recorded against the record if its value could not be deserialized
+     */
+    public static Optional<DeserializationException> of(final ConsumerRecord<?, ?> consumerRecord) {
+        if (consumerRecord.value() != null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(SerializationUtils.getExceptionFromHeader(consumerRecord,
+                SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER, LOGGER));
+    }
+
+    /**
+     * @param failure the exception raised for a record, possibly wrapped by the listener container
+     * @return the {@link DeserializationException} found in the cause chain, if any
+     */
+    public static Optional<DeserializationException> of(final Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DeserializationException deserializationException) {
+                return Optional.of(deserializationException);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @param exception the exception raised deserializing a record
+     * @return the reason the record could not be deserialized as a {@link #HEADER deserialization failure header}
+     */
+    public static Header toHeader(final DeserializationException exception) {
+        final Throwable reason = exception.getCause() != null ? exception.getCause() : exception;
+        return new RecordHeader(HEADER, (reason.getClass().getName() + ": " + reason.getMessage()).getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,52 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * How a message that could not be processed is to be handled, as determined by the exception raised while
+ * processing it. The classification travels with the failed record, and is recorded in the
+ * {@link #HEADER failure classification header} of the message republished for it.
+ */
+public enum FailureClassification {
+
+    /**
+     * A {@link RetryableException} was raised, so the message is republished to the retry topic, or to the error
+     * topic once its attempts are exhausted.
+     */
+    RETRYABLE,
+
+    /**
+     * Any other exception was raised, so the message is republished to the invalid message topic.
+     */
+    NON_RETRYABLE;
+
+    /** The header holding the classification of the failure that caused a message to be republished. */
+    public static final String HEADER = "failure_classification";
+
+    /**
+     * Classifies a failure.
+     *
+     * @param failure the exception raised while processing a message, possibly wrapped by the listener container
+     * @return {@link #RETRYABLE} if a {@link RetryableException} is found in the cause chain, otherwise
+     * {@link #NON_RETRYABLE}
+     */
+    public static FailureClassification of(final Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RetryableException) {
+                return RETRYABLE;
+            }
+        }
+        return NON_RETRYABLE;
+    }
+
+    /**
+     * @return the classification as a {@link #HEADER failure classification header}
+     */
+    public Header toHeader() {
+        return new RecordHeader(HEADER, name().getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,76 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer.FailureClassification.RETRYABLE;
+
+/**
+ * Republishes a message that could not be processed. A message that failed with a
+ * {@link uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException} goes wherever the retry
+ * topic configuration sends it, i.e. the retry topic, or the error topic once its attempts are exhausted. Any other
+ * message is routed to the invalid message topic instead.<br>
+ * <br>
+ * The route is decided from the exception that accompanies the failed record, so it does not matter which thread
+ * the record was processed or republished on.<br>
+ * <br>
+ * A message that could not be deserialized never reaches the listener. It is republished to the invalid message
+ * topic straight away, as the bytes it was consumed as, by the template for raw messages.
+ */
+public class InvalidMessageRecoverer extends DeadLetterPublishingRecoverer {
+
+    public InvalidMessageRecoverer(Function<ProducerRecord<?, ?>, KafkaOperations<?, ?>> templateResolver,
+                                   KafkaOperations<String, byte[]> rawTemplate,
+                                   BiFunction<ConsumerRecord<?, ?>, Exception, TopicPartition> destinationResolver,
+                                   String invalidMessageTopic) {
+        // Republishes in a transaction of its own should the template be transactional.
+        super(resolveRawTemplate(templateResolver, rawTemplate), true,
+                routeInvalidMessages(destinationResolver, invalidMessageTopic));
+    }
+
+    /**
+     * Adds the {@link FailureClassification#HEADER failure classification header} to a republished message, and the
+     * {@link DeserializationFailures#HEADER deserialization failure header} should it not have been deserialized.
+     *
+     * @param consumerRecord the failed record
+     * @param exception      the exception raised while processing it
+     * @return the headers to add
+     */
+    public static Headers classificationHeaders(final ConsumerRecord<?, ?> consumerRecord,
+                                                final Exception exception) {
+        final var headers = new RecordHeaders(List.of(FailureClassification.of(exception).toHeader()));
+        DeserializationFailures.of(exception)
+                .or(() -> DeserializationFailures.of(consumerRecord))
+                .ifPresent(failure -> headers.add(DeserializationFailures.toHeader(failure)));
+        return headers;
+    }
+
+    /**
+     * The value of a message that could not be deserialized is republished as the bytes it was consumed as.
+     */
+    private static Function<ProducerRecord<?, ?>, KafkaOperations<?, ?>> resolveRawTemplate(
+            final Function<ProducerRecord<?, ?>, KafkaOperations<?, ?>> templateResolver,
+            final KafkaOperations<String, byte[]> rawTemplate) {
+        return producerRecord -> producerRecord.value() instanceof byte[]
+                ? rawTemplate
+                : templateResolver.apply(producerRecord);
+    }
+
+    private static BiFunction<ConsumerRecord<?, ?>, Exception, TopicPartition> routeInvalidMessages(
+            final BiFunction<ConsumerRecord<?, ?>, Exception, TopicPartition> destinationResolver,
+            final String invalidMessageTopic) {
+        // A negative partition leaves the choice of partition to the producer.
+        return (consumerRecord, exception) -> FailureClassification.of(exception) == RETRYABLE
+                ? destinationResolver.apply(consumerRecord, exception)
+                : new TopicPartition(invalidMessageTopic, -1);
+    }
+}
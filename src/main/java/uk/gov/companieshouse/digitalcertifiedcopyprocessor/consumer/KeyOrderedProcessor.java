@@ -0,0 +1,101 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Processes the records of a batch concurrently, while still processing records that share a key on the same
+ * partition strictly one after another, in offset order. Records with no key carry no ordering guarantee and
+ * are processed independently.<br>
+ * <br>
+ * Processing is asynchronous: each task is started as soon as the record ahead of it for the same key has
+ * finished, and no thread is held while a record's processing is pending. A record whose processing failed in a way
+ * that will see it redelivered can hold back the rest of its key, which then fail the same way without being
+ * processed, as processing them now would overtake it.
+ *
+ * @param <K> the record key type
+ * @param <V> the record value type
+ */
+public class KeyOrderedProcessor<K, V> {
+
+    /**
+     * Submits every record for processing.
+     *
+     * @param records the records to process, in the order in which they were polled
+     * @param task    starts the processing of a record, returning a stage completed once it has finished
+     * @return the outcome of processing each record, in the same order as <code>records</code>
+     */
+    public List<CompletableFuture<Void>> process(
+            final List<ConsumerRecord<K, V>> records,
+            final Function<ConsumerRecord<K, V>, ? extends CompletionStage<Void>> task) {
+        return process(records, task, failure -> false);
+    }
+
+    /**
+     * Submits every record for processing, holding back the rest of a key behind a record that failed such that it
+     * will be redelivered.
+     *
+     * @param records      the records to process, in the order in which they were polled
+     * @param task         starts the processing of a record, returning a stage completed once it has finished
+     * @param holdsBackKey whether a failure leaves the record to be redelivered, so that the records after it for
+     *                     the same key are not processed but fail with the same failure
+     * @return the outcome of processing each record, in the same order as <code>records</code>
+     */
+    public List<CompletableFuture<Void>> process(
+            final List<ConsumerRecord<K, V>> records,
+            final Function<ConsumerRecord<K, V>, ? extends CompletionStage<Void>> task,
+            final Predicate<Throwable> holdsBackKey) {
+        final Map<OrderingKey, CompletableFuture<Void>> tails = new HashMap<>();
+        final List<CompletableFuture<Void>> outcomes = new ArrayList<>(records.size());
+        for (final ConsumerRecord<K, V> consumerRecord : records) {
+            final CompletableFuture<Void> outcome;
+            if (consumerRecord.key() == null) {
+                outcome = start(task, consumerRecord);
+            } else {
+                final var orderingKey = new OrderingKey(consumerRecord.partition(), consumerRecord.key());
+                final var previous = tails.get(orderingKey);
+                outcome = previous == null
+                        ? start(task, consumerRecord)
+                        // Any other failure of an earlier record for the key is handled by the caller, so must not
+                        // stop the next one.
+                        : previous.handle((ignored, ex) -> ex == null ? null : unwrap(ex))
+                                .thenCompose(failure -> failure != null && holdsBackKey.test(failure)
+                                        ? CompletableFuture.<Void>failedFuture(failure)
+                                        : task.apply(consumerRecord));
+                tails.put(orderingKey, outcome);
+            }
+            outcomes.add(outcome);
+        }
+        return outcomes;
+    }
+
+    /**
+     * Starts the task with anything it throws captured in the outcome, just as for a chained task.
+     */
+    private static <K, V> CompletableFuture<Void> start(
+            final Function<ConsumerRecord<K, V>, ? extends CompletionStage<Void>> task,
+            final ConsumerRecord<K, V> consumerRecord) {
+        return CompletableFuture.<Void>completedFuture(null).thenCompose(ignored -> task.apply(consumerRecord));
+    }
+
+    private static Throwable unwrap(final Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    private record OrderingKey(int partition, Object key) {
+
+        private OrderingKey {
+            Objects.requireNonNull(key);
+        }
+    }
+}
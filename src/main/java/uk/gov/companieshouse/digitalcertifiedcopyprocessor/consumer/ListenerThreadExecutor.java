@@ -0,0 +1,42 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer;
+
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Runs the tasks handed to it on the listener thread, while that thread waits for a batch to be processed. This
+ * lets processing that completes on other threads hand back the steps that must run on the listener thread, such
+ * as sends that are to join the listener's Kafka transaction.
+ */
+class ListenerThreadExecutor implements Executor {
+
+    private static final Runnable WAKE_UP = () -> { };
+
+    private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+
+    @Override
+    public void execute(final Runnable task) {
+        tasks.add(task);
+    }
+
+    /**
+     * Runs the tasks handed to this executor on the calling thread until the future has completed.
+     *
+     * @param future the future to wait for
+     */
+    void runUntilComplete(final CompletableFuture<?> future) {
+        future.whenComplete((result, ex) -> tasks.add(WAKE_UP));
+        try {
+            while (!future.isDone()) {
+                tasks.take().run();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RetryableException("Interrupted waiting for batch to be processed.", ex);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Tracks which offsets of each partition have been completely handled, so that committed offsets only ever
+ * move past a contiguous run of completed records. Completed records beyond the first incomplete one are
+ * remembered, so that they can be skipped when redelivered.<br>
+ * <br>
+ * Each partition is only ever handled by a single listener thread at a time, but may move between listener
+ * threads on a rebalance, hence the concurrent collections. As the batch consumer's rebalance listener, what is known
+ * of a partition is forgotten whenever it is revoked or assigned: a partition no longer assigned must not keep its
+ * completed offsets for the lifetime of the consumer, and one assigned afresh is redelivered from its committed
+ * offset, which those offsets may well predate.
+ */
+@Component
+public class OffsetTracker implements ConsumerAwareRebalanceListener {
+
+    private final Map<TopicPartition, NavigableSet<Long>> completedOffsets = new ConcurrentHashMap<>();
+
+    /**
+     * The offsets to commit after handling a batch, and the offsets to rewind to so that incomplete records are
+     * redelivered.
+     *
+     * @param offsets  the offsets to commit, by partition
+     * @param rewindTo the offset of the first incomplete record, by partition
+     */
+    public record Position(Map<TopicPartition, OffsetAndMetadata> offsets, Map<TopicPartition, Long> rewindTo) {
+    }
+
+    /**
+     * Records that the record has been completely handled, i.e. either processed or republished elsewhere.
+     *
+     * @param consumerRecord the completed record
+     */
+    public void markCompleted(final ConsumerRecord<?, ?> consumerRecord) {
+        completedOffsets.computeIfAbsent(topicPartition(consumerRecord), tp -> new ConcurrentSkipListSet<>())
+                .add(consumerRecord.offset());
+    }
+
+    /**
+     * @param consumerRecord the record
+     * @return whether the record has already been completely handled
+     */
+    public boolean isCompleted(final ConsumerRecord<?, ?> consumerRecord) {
+        final var completed = completedOffsets.get(topicPartition(consumerRecord));
+        return completed != null && completed.contains(consumerRecord.offset());
+    }
+
+    /**
+     * Works out the position each partition in the batch can be advanced to, and forgets the completed offsets
+     * that are covered by it.
+     *
+     * @param records the batch of records, in the order in which they were polled
+     * @return the resulting {@link Position}
+     */
+    public Position position(final List<? extends ConsumerRecord<?, ?>> records) {
+        final Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        final Map<TopicPartition, Long> rewindTo = new LinkedHashMap<>();
+        for (final ConsumerRecord<?, ?> consumerRecord : records) {
+            final var topicPartition = topicPartition(consumerRecord);
+            if (rewindTo.containsKey(topicPartition)) {
+                continue;
+            }
+            if (isCompleted(consumerRecord)) {
+                offsets.put(topicPartition, new OffsetAndMetadata(consumerRecord.offset() + 1));
+            } else {
+                rewindTo.put(topicPartition, consumerRecord.offset());
+            }
+        }
+        offsets.forEach((topicPartition, offset) -> {
+            final var completed = completedOffsets.get(topicPartition);
+            if (completed != null) {
+                completed.headSet(offset.offset()).clear();
+            }
+        });
+        return new Position(offsets, rewindTo);
+    }
+
+    /**
+     * Forgets that the records were completed, for when their offsets have been committed by other means.
+     *
+     * @param records the records to forget
+     */
+    public void forget(final List<? extends ConsumerRecord<?, ?>> records) {
+        for (final ConsumerRecord<?, ?> consumerRecord : records) {
+            final var completed = completedOffsets.get(topicPartition(consumerRecord));
+            if (completed != null) {
+                completed.remove(consumerRecord.offset());
+            }
+        }
+    }
+
+    @Override
+    public void onPartitionsRevokedAfterCommit(final Consumer<?, ?> consumer,
+                                               final Collection<TopicPartition> partitions) {
+        forgetPartitions(partitions);
+    }
+
+    @Override
+    public void onPartitionsAssigned(final Consumer<?, ?> consumer, final Collection<TopicPartition> partitions) {
+        forgetPartitions(partitions);
+    }
+
+    private void forgetPartitions(final Collection<TopicPartition> partitions) {
+        partitions.forEach(completedOffsets::remove);
+    }
+
+    private static TopicPartition topicPartition(final ConsumerRecord<?, ?> consumerRecord) {
+        return new TopicPartition(consumerRecord.topic(), consumerRecord.partition());
+    }
+}
@@ -0,0 +1,116 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.event.CircuitBreakerOnStateTransitionEvent;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.event.RateLimiterOnFailureEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.UpstreamGuard;
+import uk.gov.companieshouse.logging.Logger;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static io.github.resilience4j.circuitbreaker.CircuitBreaker.State.FORCED_OPEN;
+import static io.github.resilience4j.circuitbreaker.CircuitBreaker.State.OPEN;
+
+/**
+ * Pauses every listener container of this consumer group while the circuit breaker of any upstream API is open, and
+ * resumes them once none is. Messages consumed while an API is unavailable could only fail, so rather than being
+ * republished to the retry topic one by one, they are left unconsumed until it has had a chance to recover.<br>
+ * <br>
+ * Likewise, should the rate limiter of an API refuse a call for its rate limit having been reached, the containers are
+ * paused for as long as a call may wait on it, so that the backlog is drained at the rate the API allows rather than
+ * by consuming messages that could only be refused.<br>
+ * <br>
+ * A container finishes the record or batch in hand before pausing. Any of its calls refused meanwhile fail with an
+ * {@link uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.UpstreamUnavailableException}, upon which the
+ * {@link BatchConsumer} and the {@link Consumer main consumer} redeliver the record rather than retrying it.
+ */
+@Component
+public class UpstreamPauseController {
+
+    private final KafkaListenerEndpointRegistry registry;
+    private final UpstreamGuard upstreamGuard;
+    private final Logger logger;
+    private final String listenerIdPrefix;
+
+    /** The {@link System#nanoTime()} until which consumption is paused for a rate limit having been reached. */
+    private long rateLimitedUntil;
+    private boolean rateLimited;
+
+    public UpstreamPauseController(KafkaListenerEndpointRegistry registry,
+                                   UpstreamGuard upstreamGuard,
+                                   Logger logger,
+                                   @Value("${consumer.group_id}") String listenerIdPrefix) {
+        this.registry = registry;
+        this.upstreamGuard = upstreamGuard;
+        this.logger = logger;
+        this.listenerIdPrefix = listenerIdPrefix;
+        upstreamGuard.getCircuitBreakers().values().forEach(circuitBreaker ->
+                circuitBreaker.getEventPublisher().onStateTransition(this::onStateTransition));
+        upstreamGuard.getRateLimiters().values().forEach(rateLimiter ->
+                rateLimiter.getEventPublisher().onFailure(event -> onRateLimited(rateLimiter, event)));
+    }
+
+    synchronized void onStateTransition(final CircuitBreakerOnStateTransitionEvent event) {
+        logger.info("Circuit breaker for the " + event.getCircuitBreakerName() + " transitioned "
+                + event.getStateTransition().getFromState() + " to " + event.getStateTransition().getToState() + ".");
+        pauseOrResume();
+    }
+
+    synchronized void onRateLimited(final RateLimiter rateLimiter, final RateLimiterOnFailureEvent event) {
+        final long pauseNanos = rateLimiter.getRateLimiterConfig().getTimeoutDuration().toNanos();
+        if (!isRateLimited()) {
+            logger.info("Rate limit of the " + event.getRateLimiterName() + " reached.");
+        }
+        rateLimited = true;
+        rateLimitedUntil = System.nanoTime() + pauseNanos;
+        pauseOrResume();
+        CompletableFuture.delayedExecutor(pauseNanos, TimeUnit.NANOSECONDS).execute(this::pauseOrResume);
+    }
+
+    private synchronized void pauseOrResume() {
+        if (isAnyOpen() || isRateLimited()) {
+            listenerContainers()
+                    .filter(container -> !container.isPauseRequested())
+                    .forEach(container -> {
+                        logger.info("Pausing listener container " + container.getListenerId()
+                                + " while an upstream API is unavailable.");
+                        container.pause();
+                    });
+        } else {
+            listenerContainers()
+                    .filter(MessageListenerContainer::isPauseRequested)
+                    .forEach(container -> {
+                        logger.info("Resuming listener container " + container.getListenerId() + ".");
+                        container.resume();
+                    });
+        }
+    }
+
+    private boolean isRateLimited() {
+        return rateLimited && System.nanoTime() - rateLimitedUntil < 0;
+    }
+
+    private boolean isAnyOpen() {
+        return upstreamGuard.getCircuitBreakers().values().stream()
+                .map(CircuitBreaker::getState)
+                .anyMatch(state -> state == OPEN || state == FORCED_OPEN);
+    }
+
+    /**
+     * @return the containers of the main, batch, retry and error topic listeners
+     */
+    private Stream<MessageListenerContainer> listenerContainers() {
+        return registry.getListenerContainerIds().stream()
+                .filter(id -> id.startsWith(listenerIdPrefix))
+                .map(registry::getListenerContainer)
+                .filter(Objects::nonNull);
+    }
+}
@@ -0,0 +1,12 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception;
+
+/**
+ * The filing history document ordered does not exist, e.g. as it has been deleted or its ID mistyped. Looking it up
+ * again would only get the same answer, so this is not recoverable.
+ */
+public class FilingHistoryDocumentNotFoundException extends NonRetryableException {
+
+    public FilingHistoryDocumentNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,17 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception;
+
+/**
+ * A call to an upstream API was not attempted, as its circuit breaker is open, its bulkhead full or its rate limit
+ * reached. The message being processed is not at fault, so it is better redelivered once the API has recovered than
+ * retried.
+ */
+public class UpstreamUnavailableException extends RetryableException {
+
+    public UpstreamUnavailableException(String message) {
+        super(message);
+    }
+
+    public UpstreamUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,139 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka;
+
+import consumer.deserialization.AvroDeserializer;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import uk.gov.companieshouse.itemorderedcertifiedcopy.ItemOrderedCertifiedCopy;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Deserializes the {@link ItemOrderedCertifiedCopy} messages consumed, retaining the bytes each was deserialized from
+ * in its {@link #ORIGINAL_VALUE_HEADER} header. Should the message be republished to the retry or invalid message
+ * topic, the {@link ItemOrderedCertifiedCopyAvroSerializer} writes those same bytes back out rather than encoding the
+ * message again. The header refers to the bytes the consumer has already read, so no copy is made.<br>
+ * <br>
+ * Messages are decoded by the {@link SpecificRecordCodec codec} compiled for the schema. Any message it cannot decode
+ * in full is handed to the generic <code>AvroDeserializer</code> instead. Each consumer thread reuses a single
+ * {@link BinaryDecoder}.<br>
+ * <br>
+ * When constructed to {@link #ItemOrderedCertifiedCopyAvroDeserializer(boolean) reuse records}, each consumer thread
+ * also decodes its messages into a ring of as many records as a single poll may return
+ * ({@link ConsumerConfig#MAX_POLL_RECORDS_CONFIG max.poll.records}). A record is then only overwritten once the
+ * following poll is deserialized, by which time a batch listener will have finished with it. This mode is NOT safe for
+ * a listener that hands records on to work outliving the batch they arrived in. As a ring smaller than a poll would
+ * have one message of the poll overwrite another, <code>max.poll.records</code> must be among the configs the
+ * deserializer is configured with, else it refuses to deserialize anything.
+ */
+public class ItemOrderedCertifiedCopyAvroDeserializer implements Deserializer<ItemOrderedCertifiedCopy> {
+
+    /** The header in which the bytes a consumed message was deserialized from are retained. */
+    public static final String ORIGINAL_VALUE_HEADER = "original_value";
+
+    private final SpecificRecordCodec<ItemOrderedCertifiedCopy> codec =
+            SpecificRecordCodec.of(ItemOrderedCertifiedCopy.getClassSchema());
+    private final Deserializer<ItemOrderedCertifiedCopy> delegate =
+            new AvroDeserializer<>(ItemOrderedCertifiedCopy.class);
+    private final ThreadLocal<Decoding> decodings = ThreadLocal.withInitial(this::newDecoding);
+    private final boolean reuseRecords;
+    private volatile int recordsPerThread;
+
+    public ItemOrderedCertifiedCopyAvroDeserializer() {
+        this(false);
+    }
+
+    /**
+     * @param reuseRecords whether each consumer thread decodes its messages into records it has returned before, in
+     *                     which case it must be configured with <code>max.poll.records</code>
+     */
+    public ItemOrderedCertifiedCopyAvroDeserializer(final boolean reuseRecords) {
+        this.reuseRecords = reuseRecords;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        delegate.configure(configs, isKey);
+        final var maxPollRecords = configs.get(ConsumerConfig.MAX_POLL_RECORDS_CONFIG);
+        if (maxPollRecords != null) {
+            recordsPerThread = Integer.parseInt(maxPollRecords.toString());
+        } else if (reuseRecords) {
+            throw new ConfigException(ConsumerConfig.MAX_POLL_RECORDS_CONFIG + " must be configured to reuse records.");
+        }
+    }
+
+    @Override
+    public ItemOrderedCertifiedCopy deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        final var decoding = decodings.get();
+        try {
+            final var decoder = decoding.decoder = DecoderFactory.get().binaryDecoder(data, decoding.decoder);
+            final var value = codec.decode(decoder, decoding.nextRecord());
+            if (decoder.isEnd()) {
+                decoding.keep(value);
+                return value;
+            }
+        } catch (IOException | RuntimeException e) {
+            // The generic deserializer reports whatever is wrong with the message.
+        }
+        return delegate.deserialize(topic, data);
+    }
+
+    @Override
+    public ItemOrderedCertifiedCopy deserialize(String topic, Headers headers, byte[] data) {
+        final var value = deserialize(topic, data);
+        if (value != null) {
+            headers.remove(ORIGINAL_VALUE_HEADER);
+            headers.add(ORIGINAL_VALUE_HEADER, data);
+        }
+        return value;
+    }
+
+    @Override
+    public void close() {
+        decodings.remove();
+        delegate.close();
+    }
+
+    private Decoding newDecoding() {
+        if (!reuseRecords) {
+            return new Decoding(null);
+        }
+        if (recordsPerThread <= 0) {
+            throw new IllegalStateException(ConsumerConfig.MAX_POLL_RECORDS_CONFIG
+                    + " must be configured to reuse records.");
+        }
+        return new Decoding(new ItemOrderedCertifiedCopy[recordsPerThread]);
+    }
+
+    /**
+     * The decoder a consumer thread reuses, and the ring of records it decodes into when records are reused.
+     */
+    private static final class Decoding {
+
+        private final ItemOrderedCertifiedCopy[] records;
+        private BinaryDecoder decoder;
+        private int next;
+
+        private Decoding(final ItemOrderedCertifiedCopy[] records) {
+            this.records = records;
+        }
+
+        private ItemOrderedCertifiedCopy nextRecord() {
+            return records != null ? records[next] : null;
+        }
+
+        private void keep(final ItemOrderedCertifiedCopy record) {
+            if (records != null) {
+                records[next] = record;
+                next = (next + 1) % records.length;
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka;
+
+import org.apache.kafka.common.header.Headers;
+import uk.gov.companieshouse.itemorderedcertifiedcopy.ItemOrderedCertifiedCopy;
+
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka.ItemOrderedCertifiedCopyAvroDeserializer.ORIGINAL_VALUE_HEADER;
+
+/**
+ * Serializes the {@link ItemOrderedCertifiedCopy} messages republished to the retry and invalid message topics. A
+ * message consumed by this application is republished exactly as it was received: the bytes retained in its
+ * {@link ItemOrderedCertifiedCopyAvroDeserializer#ORIGINAL_VALUE_HEADER} header are written out as they are, and the
+ * header itself dropped.
+ */
+public class ItemOrderedCertifiedCopyAvroSerializer extends SpecificRecordAvroSerializer<ItemOrderedCertifiedCopy> {
+
+    public ItemOrderedCertifiedCopyAvroSerializer() {
+        super(ItemOrderedCertifiedCopy.getClassSchema());
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, ItemOrderedCertifiedCopy data) {
+        final var originalValue = headers.lastHeader(ORIGINAL_VALUE_HEADER);
+        if (originalValue == null) {
+            return serialize(topic, data);
+        }
+        headers.remove(ORIGINAL_VALUE_HEADER);
+        return data != null ? originalValue.value() : null;
+    }
+}
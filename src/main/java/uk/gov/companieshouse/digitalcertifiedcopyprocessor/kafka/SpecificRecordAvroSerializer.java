@@ -0,0 +1,82 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Serializes messages of a generated Avro type to Avro binary, exactly as read by the <code>AvroDeserializer</code>
+ * our consumers use. The {@link SpecificRecordCodec codec} is compiled once for the message schema, and the buffers
+ * and encoders messages are written with are pooled for reuse rather than being created for each message. They are
+ * pooled rather than held per thread as messages may be sent from virtual threads, each of which would otherwise get
+ * buffers of its own.
+ *
+ * @param <T> the generated Avro type serialized
+ */
+public abstract class SpecificRecordAvroSerializer<T extends SpecificRecord> implements Serializer<T> {
+
+    private static final int POOL_SIZE = 64;
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    private final SpecificRecordCodec<T> codec;
+    private final String typeName;
+    private final BlockingQueue<Encoding> encodings = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    protected SpecificRecordAvroSerializer(final Schema schema) {
+        this.codec = SpecificRecordCodec.of(schema);
+        this.typeName = schema.getName();
+    }
+
+    @Override
+    public byte[] serialize(String topic, T data) {
+        if (data == null) {
+            return null;
+        }
+        final var encoding = borrowEncoding();
+        try {
+            codec.encode(data, encoding.encoder);
+            encoding.encoder.flush();
+            return encoding.buffer.toByteArray();
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException("Error when serializing " + typeName + " to byte[]", e);
+        } finally {
+            returnEncoding(encoding);
+        }
+    }
+
+    @Override
+    public void close() {
+        encodings.clear();
+    }
+
+    private Encoding borrowEncoding() {
+        final var encoding = encodings.poll();
+        return encoding != null ? encoding : new Encoding();
+    }
+
+    private void returnEncoding(final Encoding encoding) {
+        // An unusually large message is not allowed to pin its buffer for the lifetime of the producer.
+        if (encoding.buffer.size() <= MAX_RETAINED_BUFFER_SIZE) {
+            encoding.buffer.reset();
+            encodings.offer(encoding);
+        }
+    }
+
+    /**
+     * A growable buffer and an encoder writing straight to it, so that no further buffering or flushing is needed.
+     */
+    private static final class Encoding {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        private final BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(buffer, null);
+    }
+}
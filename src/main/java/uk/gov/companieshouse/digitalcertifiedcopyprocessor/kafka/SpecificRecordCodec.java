@@ -0,0 +1,431 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.avro.util.Utf8;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Encodes and decodes a generated Avro type to and from Avro binary. The schema is compiled once, up front, into a
+ * codec for each of its fields, so that encoding and decoding a message neither walks the schema nor resolves it
+ * against itself, and strings are read straight into {@link String}s rather than by way of {@link Utf8}. Should the
+ * schema use anything the compiler does not cover, such as a logical type anywhere within it, Avro's own
+ * {@link SpecificDatumWriter} and {@link SpecificDatumReader} are used instead. A message may be decoded into an
+ * earlier one, whose records, maps and lists are then reused.
+ *
+ * @param <T> the generated Avro type encoded and decoded
+ */
+public final class SpecificRecordCodec<T extends SpecificRecord> {
+
+    private static final int MAX_INITIAL_CAPACITY = 64;
+    private static final int STRING_CHUNK_SIZE = 8192;
+
+    private final ValueCodec compiled;
+    private final DatumWriter<T> writer;
+    private final DatumReader<T> reader;
+
+    private SpecificRecordCodec(final Schema schema) {
+        this.compiled = compile(schema, new HashSet<>());
+        this.writer = compiled == null ? new SpecificDatumWriter<>(schema) : null;
+        this.reader = compiled == null ? new SpecificDatumReader<>(schema) : null;
+    }
+
+    /**
+     * @param schema the schema of the generated type
+     * @param <T>    the generated type
+     * @return the codec for the type, compiled if possible
+     */
+    public static <T extends SpecificRecord> SpecificRecordCodec<T> of(final Schema schema) {
+        return new SpecificRecordCodec<>(schema);
+    }
+
+    /**
+     * @return whether the schema was compiled, rather than falling back to Avro's own reader and writer
+     */
+    public boolean isCompiled() {
+        return compiled != null;
+    }
+
+    public void encode(final T datum, final BinaryEncoder encoder) throws IOException {
+        if (compiled != null) {
+            compiled.encode(datum, encoder);
+        } else {
+            writer.write(datum, encoder);
+        }
+    }
+
+    public T decode(final BinaryDecoder decoder) throws IOException {
+        return decode(decoder, null);
+    }
+
+    /**
+     * @param decoder the decoder to read the message from
+     * @param reuse   a message no longer in use to decode into, or <code>null</code>
+     * @return the message decoded, which is <code>reuse</code> itself unless that is <code>null</code>
+     * @throws IOException should the message not be read
+     */
+    @SuppressWarnings("unchecked")
+    public T decode(final BinaryDecoder decoder, final T reuse) throws IOException {
+        return compiled != null ? (T) compiled.decode(decoder, reuse) : reader.read(reuse, decoder);
+    }
+
+    /**
+     * Encodes and decodes values of one schema.
+     */
+    private interface ValueCodec {
+
+        void encode(Object value, BinaryEncoder encoder) throws IOException;
+
+        Object decode(BinaryDecoder decoder, Object reuse) throws IOException;
+    }
+
+    /**
+     * @return the codec for values of the schema, or <code>null</code> should the schema not be supported
+     */
+    private static ValueCodec compile(final Schema schema, final Set<String> enclosingRecords) {
+        // Values of a logical type are converted to and from their generated types, e.g. an Instant for a timestamp.
+        if (schema.getLogicalType() != null) {
+            return null;
+        }
+        return switch (schema.getType()) {
+            case RECORD -> compileRecord(schema, enclosingRecords);
+            case MAP -> compileMap(schema, enclosingRecords);
+            case ARRAY -> compileArray(schema, enclosingRecords);
+            case UNION -> compileOptional(schema, enclosingRecords);
+            case ENUM -> compileEnum(schema);
+            case STRING -> STRING_CODEC;
+            case NULL -> NULL_CODEC;
+            case BOOLEAN -> BOOLEAN_CODEC;
+            case INT -> INT_CODEC;
+            case LONG -> LONG_CODEC;
+            case FLOAT -> FLOAT_CODEC;
+            case DOUBLE -> DOUBLE_CODEC;
+            default -> null;
+        };
+    }
+
+    private static ValueCodec compileRecord(final Schema schema, final Set<String> enclosingRecords) {
+        final var recordClass = SpecificData.getForSchema(schema).getClass(schema);
+        // A recursive schema would never finish compiling.
+        if (recordClass == null || !enclosingRecords.add(schema.getFullName())) {
+            return null;
+        }
+        final var fields = new ValueCodec[schema.getFields().size()];
+        for (final var field : schema.getFields()) {
+            fields[field.pos()] = compile(field.schema(), enclosingRecords);
+            if (fields[field.pos()] == null) {
+                return null;
+            }
+        }
+        enclosingRecords.remove(schema.getFullName());
+        return new ValueCodec() {
+
+            @Override
+            public void encode(final Object value, final BinaryEncoder encoder) throws IOException {
+                final var record = (SpecificRecord) value;
+                for (int position = 0; position < fields.length; position++) {
+                    fields[position].encode(record.get(position), encoder);
+                }
+            }
+
+            @Override
+            public Object decode(final BinaryDecoder decoder, final Object reuse) throws IOException {
+                final var record = recordClass.isInstance(reuse)
+                        ? (SpecificRecord) reuse
+                        : (SpecificRecord) SpecificData.newInstance(recordClass, schema);
+                for (int position = 0; position < fields.length; position++) {
+                    record.put(position, fields[position].decode(decoder, record.get(position)));
+                }
+                return record;
+            }
+        };
+    }
+
+    private static ValueCodec compileMap(final Schema schema, final Set<String> enclosingRecords) {
+        final var values = compile(schema.getValueType(), enclosingRecords);
+        if (values == null) {
+            return null;
+        }
+        return new ValueCodec() {
+
+            @Override
+            public void encode(final Object value, final BinaryEncoder encoder) throws IOException {
+                final var map = (Map<?, ?>) value;
+                encoder.writeMapStart();
+                encoder.setItemCount(map.size());
+                for (final var entry : map.entrySet()) {
+                    encoder.startItem();
+                    STRING_CODEC.encode(entry.getKey(), encoder);
+                    values.encode(entry.getValue(), encoder);
+                }
+                encoder.writeMapEnd();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object decode(final BinaryDecoder decoder, final Object reuse) throws IOException {
+                long count = decoder.readMapStart();
+                final Map<Object, Object> map;
+                if (reuse instanceof HashMap<?, ?> reused) {
+                    map = (Map<Object, Object>) reused;
+                    map.clear();
+                } else {
+                    map = HashMap.newHashMap(initialCapacity(count));
+                }
+                for (; count != 0; count = decoder.mapNext()) {
+                    for (long index = 0; index < count; index++) {
+                        map.put(STRING_CODEC.decode(decoder, null), values.decode(decoder, null));
+                    }
+                }
+                return map;
+            }
+        };
+    }
+
+    private static ValueCodec compileArray(final Schema schema, final Set<String> enclosingRecords) {
+        final var elements = compile(schema.getElementType(), enclosingRecords);
+        if (elements == null) {
+            return null;
+        }
+        return new ValueCodec() {
+
+            @Override
+            public void encode(final Object value, final BinaryEncoder encoder) throws IOException {
+                final var collection = (Collection<?>) value;
+                encoder.writeArrayStart();
+                encoder.setItemCount(collection.size());
+                for (final var element : collection) {
+                    encoder.startItem();
+                    elements.encode(element, encoder);
+                }
+                encoder.writeArrayEnd();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object decode(final BinaryDecoder decoder, final Object reuse) throws IOException {
+                long count = decoder.readArrayStart();
+                final List<Object> list;
+                if (reuse instanceof ArrayList<?> reused) {
+                    list = (List<Object>) reused;
+                    list.clear();
+                } else {
+                    list = new ArrayList<>(initialCapacity(count));
+                }
+                for (; count != 0; count = decoder.arrayNext()) {
+                    for (long index = 0; index < count; index++) {
+                        list.add(elements.decode(decoder, null));
+                    }
+                }
+                return list;
+            }
+        };
+    }
+
+    /**
+     * Only unions of null and one other type, i.e. optional values, are supported.
+     */
+    private static ValueCodec compileOptional(final Schema schema, final Set<String> enclosingRecords) {
+        final var branches = schema.getTypes();
+        if (branches.size() != 2 || branches.stream().noneMatch(branch -> branch.getType() == Schema.Type.NULL)) {
+            return null;
+        }
+        final var nullIndex = branches.get(0).getType() == Schema.Type.NULL ? 0 : 1;
+        final var valueIndex = 1 - nullIndex;
+        final var values = compile(branches.get(valueIndex), enclosingRecords);
+        if (values == null) {
+            return null;
+        }
+        return new ValueCodec() {
+
+            @Override
+            public void encode(final Object value, final BinaryEncoder encoder) throws IOException {
+                if (value == null) {
+                    encoder.writeIndex(nullIndex);
+                } else {
+                    encoder.writeIndex(valueIndex);
+                    values.encode(value, encoder);
+                }
+            }
+
+            @Override
+            public Object decode(final BinaryDecoder decoder, final Object reuse) throws IOException {
+                final var index = decoder.readIndex();
+                if (index == nullIndex) {
+                    return null;
+                } else if (index == valueIndex) {
+                    return values.decode(decoder, reuse);
+                }
+                throw new IOException("Union index " + index + " out of range for " + schema + ".");
+            }
+        };
+    }
+
+    private static ValueCodec compileEnum(final Schema schema) {
+        final var enumClass = SpecificData.getForSchema(schema).getClass(schema);
+        if (enumClass == null || !enumClass.isEnum()) {
+            return null;
+        }
+        // The constants of a generated enum are declared in the order of the symbols in its schema.
+        final var constants = (Enum<?>[]) enumClass.getEnumConstants();
+        return new ValueCodec() {
+
+            @Override
+            public void encode(final Object value, final BinaryEncoder encoder) throws IOException {
+                encoder.writeEnum(((Enum<?>) value).ordinal());
+            }
+
+            @Override
+            public Object decode(final BinaryDecoder decoder, final Object reuse) throws IOException {
+                final var index = decoder.readEnum();
+                if (index < 0 || index >= constants.length) {
+                    throw new IOException("Enum index " + index + " out of range for " + schema + ".");
+                }
+                return constants[index];
+            }
+        };
+    }
+
+    /**
+     * The count in the first block of a map or array is not trusted to size the collection for all of it.
+     */
+    private static int initialCapacity(final long count) {
+        return (int) Math.min(count, MAX_INITIAL_CAPACITY);
+    }
+
+    private static final ValueCodec STRING_CODEC = new ValueCodec() {
+
+        @Override
+        public void encode(final Object value, final BinaryEncoder encoder) throws IOException {
+            if (value instanceof Utf8 utf8) {
+                encoder.writeString(utf8);
+            } else {
+                encoder.writeString(value.toString());
+            }
+        }
+
+        @Override
+        public Object decode(final BinaryDecoder decoder, final Object reuse) throws IOException {
+            final var length = decoder.readLong();
+            if (length < 0 || length > Integer.MAX_VALUE) {
+                throw new IOException("Malformed string length " + length + ".");
+            }
+            return new String(readBytes(decoder, (int) length), UTF_8);
+        }
+    };
+
+    /**
+     * A long string is read a chunk at a time, so that a malformed length never allocates much more than the bytes
+     * actually left in the message, which run out first.
+     */
+    private static byte[] readBytes(final BinaryDecoder decoder, final int length) throws IOException {
+        var bytes = new byte[Math.min(length, STRING_CHUNK_SIZE)];
+        int read = 0;
+        while (read < length) {
+            if (read == bytes.length) {
+                bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * bytes.length));
+            }
+            final var chunk = bytes.length - read;
+            decoder.readFixed(bytes, read, chunk);
+            read += chunk;
+        }
+        return bytes;
+    }
+
+    private static final ValueCodec NULL_CODEC = new ValueCodec() {
+
+        @Override
+        public void encode(final Object value, final BinaryEncoder encoder) throws IOException {
+            encoder.writeNull();
+        }
+
+        @Override
+        public Object decode(final BinaryDecoder decoder, final Object reuse) throws IOException {
+            decoder.readNull();
+            return null;
+        }
+    };
+
+    private static final ValueCodec BOOLEAN_CODEC = new ValueCodec() {
+
+        @Override
+        public void encode(final Object value, final BinaryEncoder encoder) throws IOException {
+            encoder.writeBoolean((Boolean) value);
+        }
+
+        @Override
+        public Object decode(final BinaryDecoder decoder, final Object reuse) throws IOException {
+            return decoder.readBoolean();
+        }
+    };
+
+    private static final ValueCodec INT_CODEC = new ValueCodec() {
+
+        @Override
+        public void encode(final Object value, final BinaryEncoder encoder) throws IOException {
+            encoder.writeInt((Integer) value);
+        }
+
+        @Override
+        public Object decode(final BinaryDecoder decoder, final Object reuse) throws IOException {
+            return decoder.readInt();
+        }
+    };
+
+    private static final ValueCodec LONG_CODEC = new ValueCodec() {
+
+        @Override
+        public void encode(final Object value, final BinaryEncoder encoder) throws IOException {
+            encoder.writeLong((Long) value);
+        }
+
+        @Override
+        public Object decode(final BinaryDecoder decoder, final Object reuse) throws IOException {
+            return decoder.readLong();
+        }
+    };
+
+    private static final ValueCodec FLOAT_CODEC = new ValueCodec() {
+
+        @Override
+        public void encode(final Object value, final BinaryEncoder encoder) throws IOException {
+            encoder.writeFloat((Float) value);
+        }
+
+        @Override
+        public Object decode(final BinaryDecoder decoder, final Object reuse) throws IOException {
+            return decoder.readFloat();
+        }
+    };
+
+    private static final ValueCodec DOUBLE_CODEC = new ValueCodec() {
+
+        @Override
+        public void encode(final Object value, final BinaryEncoder encoder) throws IOException {
+            encoder.writeDouble((Double) value);
+        }
+
+        @Override
+        public Object decode(final BinaryDecoder decoder, final Object reuse) throws IOException {
+            return decoder.readDouble();
+        }
+    };
+}
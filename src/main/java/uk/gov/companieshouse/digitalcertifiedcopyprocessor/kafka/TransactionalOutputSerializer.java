@@ -0,0 +1,25 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka;
+
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.serializer.DelegatingByTypeSerializer;
+import uk.gov.companieshouse.documentsigning.SignDigitalDocument;
+import uk.gov.companieshouse.itemorderedcertifiedcopy.ItemOrderedCertifiedCopy;
+
+import java.util.Map;
+
+/**
+ * Serializes every message produced while processing a batch within a Kafka transaction: the
+ * {@link SignDigitalDocument} messages, and the {@link ItemOrderedCertifiedCopy} messages and undeserialisable message
+ * bytes republished to the retry and invalid message topics. All of them are then sent by the one transactional
+ * producer, and so committed or rolled back along with the offsets of the batch.
+ */
+public class TransactionalOutputSerializer extends DelegatingByTypeSerializer {
+
+    public TransactionalOutputSerializer() {
+        super(Map.<Class<?>, Serializer<?>>of(
+                SignDigitalDocument.class, new SignDigitalDocumentAvroSerializer(),
+                ItemOrderedCertifiedCopy.class, new ItemOrderedCertifiedCopyAvroSerializer(),
+                byte[].class, new ByteArraySerializer()));
+    }
+}
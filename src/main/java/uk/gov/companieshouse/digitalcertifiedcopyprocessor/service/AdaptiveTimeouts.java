@@ -0,0 +1,86 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.UpstreamGuard.Upstream;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Derives the read timeout of the requests made to each upstream API from the latencies of its recent calls, so that
+ * a request to an API that has hung is given up on about as soon as it is clearly overdue, rather than holding up the
+ * listener thread for the full <code>api_client.read_timeout_ms</code>.<br>
+ * <br>
+ * With <code>upstream.timeout.adaptive</code>, the read timeout of an API is the
+ * <code>upstream.timeout.percentile</code> percentile of the latencies of its last
+ * <code>upstream.timeout.window_size</code> calls multiplied by <code>upstream.timeout.factor</code>, clamped between
+ * <code>upstream.timeout.min_ms</code> and <code>api_client.read_timeout_ms</code>. Until enough calls have been made
+ * to estimate the percentile, and without <code>upstream.timeout.adaptive</code>,
+ * <code>api_client.read_timeout_ms</code> is used. The latencies are those timed by the {@link UpstreamGuard}, of
+ * failed calls as well as successful ones: a call that timed out took as long as its timeout, so should the latency
+ * of an API rise past its timeout, the timeouts recorded raise it in turn.<br>
+ * <br>
+ * The read timeout of each API is published as the <code>upstream.read.timeout</code> metric tagged with the name of
+ * the API.
+ */
+@Component
+public class AdaptiveTimeouts {
+
+    private final boolean adaptive;
+
+    private final double factor;
+
+    private final int minMillis;
+
+    private final int maxMillis;
+
+    private final Map<Upstream, LatencyWindow> latencies = new EnumMap<>(Upstream.class);
+
+    public AdaptiveTimeouts(final UpstreamGuard upstreamGuard,
+                            @Value("${upstream.timeout.adaptive:false}") boolean adaptive,
+                            @Value("${upstream.timeout.percentile:99.9}") double percentile,
+                            @Value("${upstream.timeout.factor:3}") double factor,
+                            @Value("${upstream.timeout.min_ms:1000}") int minMillis,
+                            @Value("${api_client.read_timeout_ms:20000}") int maxMillis,
+                            @Value("${upstream.timeout.window_size:1000}") int windowSize,
+                            ObjectProvider<MeterRegistry> meterRegistry) {
+        this.adaptive = adaptive;
+        this.factor = factor;
+        this.minMillis = Math.min(minMillis, maxMillis);
+        this.maxMillis = maxMillis;
+        for (final var upstream : Upstream.values()) {
+            final var window = new LatencyWindow(windowSize, percentile);
+            latencies.put(upstream, window);
+            upstreamGuard.getCircuitBreakers().get(upstream).getEventPublisher()
+                    .onSuccess(event -> window.record(event.getElapsedDuration().toNanos()))
+                    .onError(event -> window.record(event.getElapsedDuration().toNanos()));
+        }
+        meterRegistry.ifAvailable(registry -> {
+            for (final var upstream : Upstream.values()) {
+                Gauge.builder("upstream.read.timeout", () -> readTimeoutMillis(upstream))
+                        .description("Read timeout of the requests made to the upstream API")
+                        .tag("api", upstream.getApiName())
+                        .baseUnit("milliseconds")
+                        .register(registry);
+            }
+        });
+    }
+
+    /**
+     * @param upstream the API called
+     * @return the read timeout in milliseconds of the next request made to the API
+     */
+    public int readTimeoutMillis(final Upstream upstream) {
+        final var percentileNanos = latencies.get(upstream).percentileNanos();
+        if (!adaptive || percentileNanos == 0) {
+            return maxMillis;
+        }
+        final var timeout = (long) Math.ceil(percentileNanos * factor / TimeUnit.MILLISECONDS.toNanos(1));
+        return Math.clamp(timeout, minMillis, maxMillis);
+    }
+}
@@ -1,19 +1,162 @@
 package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
 
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.v5.Apache5HttpTransport;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import uk.gov.companieshouse.api.ApiClient;
 import uk.gov.companieshouse.api.InternalApiClient;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.UpstreamGuard.Upstream;
+import uk.gov.companieshouse.environment.impl.EnvironmentReaderImpl;
 import uk.gov.companieshouse.sdk.manager.ApiSdkManager;
 
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.springframework.http.HttpHeaders.AUTHORIZATION;
+
+/**
+ * Provides the API clients with which the upstream APIs are called. Every client sends its requests over a single
+ * pool of keep-alive connections, so that connections (and their TLS sessions) are reused from one message to the
+ * next rather than being set up for each request. The pool is bounded both in total and per route (host), and
+ * connections are closed once idle for the keep-alive period.<br>
+ * <br>
+ * The state of the pool is published as the <code>httpcomponents.httpclient.pool.*</code> metrics tagged
+ * <code>httpclient=api-client</code>.<br>
+ * <br>
+ * For the non-blocking lookups, a single asynchronous {@link HttpClient} is also provided, together with requests
+ * authenticated with the API key just as the SDK's are.<br>
+ * <br>
+ * Each request is given the read timeout of the API it is made to, as derived by the {@link AdaptiveTimeouts}.
+ */
 @Service
 public class ApiClientService {
 
-    public ApiClient getApiClient() {
-        return ApiSdkManager.getSDK();
+    static final String POOL_NAME = "api-client";
+
+    /** The environment variable holding the URL of the API gateway. */
+    static final String API_URL = "API_URL";
+    /** The environment variable holding the URL of the document API. */
+    static final String DOCUMENT_API_URL = "DOCUMENT_API_LOCAL_URL";
+
+    private static final String CHS_API_KEY = "CHS_API_KEY";
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final HttpTransport transport;
+    private final HttpClient asyncHttpClient;
+    private final int connectTimeout;
+    private final AdaptiveTimeouts timeouts;
+
+    public ApiClientService(@Value("${api_client.pool.max_total:100}") int maxTotal,
+                            @Value("${api_client.pool.max_per_route:20}") int maxPerRoute,
+                            @Value("${api_client.keep_alive_ms:60000}") long keepAlive,
+                            @Value("${api_client.connect_timeout_ms:20000}") int connectTimeout,
+                            AdaptiveTimeouts timeouts,
+                            ObjectProvider<MeterRegistry> meterRegistry) {
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy((response, context) -> TimeValue.ofMilliseconds(keepAlive))
+                .evictIdleConnections(TimeValue.ofMilliseconds(keepAlive))
+                // Redirects and retries are left to the SDK, which expects to see the document API's redirect itself.
+                .disableRedirectHandling()
+                .disableAutomaticRetries()
+                .build();
+        this.transport = new Apache5HttpTransport(httpClient);
+        this.asyncHttpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeout))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+        this.connectTimeout = connectTimeout;
+        this.timeouts = timeouts;
+        meterRegistry.ifAvailable(registry ->
+                new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, POOL_NAME).bindTo(registry));
+    }
+
+    /**
+     * @param upstream the API the client is to call, the read timeout of which its requests are given
+     * @return the API client
+     */
+    public ApiClient getApiClient(final Upstream upstream) {
+        return ApiSdkManager.getSDK(pooledHttpClient(upstream));
     }
 
-    public InternalApiClient getInternalApiClient() {
-        return ApiSdkManager.getPrivateSDK();
+    /**
+     * @param upstream the API the client is to call, the read timeout of which its requests are given
+     * @return the internal API client
+     */
+    public InternalApiClient getInternalApiClient(final Upstream upstream) {
+        return ApiSdkManager.getPrivateSDK(pooledHttpClient(upstream));
     }
 
+    /**
+     * @return the long-lived client with which the non-blocking lookups send their requests
+     */
+    public HttpClient getAsyncHttpClient() {
+        return asyncHttpClient;
+    }
+
+    /**
+     * Starts building a request to an upstream API, authenticated with the API key, and given the read timeout of the
+     * API as its timeout.
+     * @param upstream the API requested
+     * @param path the path of the resource requested
+     * @return the request builder
+     */
+    public HttpRequest.Builder newAsyncRequest(final Upstream upstream, final String path) {
+        final var environmentReader = new EnvironmentReaderImpl();
+        final var apiKey = environmentReader.getMandatoryString(CHS_API_KEY);
+        final var baseUrl = environmentReader.getMandatoryString(getBaseUrlVariable(upstream));
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofMillis(timeouts.readTimeoutMillis(upstream)))
+                .header(AUTHORIZATION, "Basic " + Base64.getEncoder()
+                        .encodeToString((apiKey + ":").getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @PreDestroy
+    void close() {
+        httpClient.close(CloseMode.GRACEFUL);
+        asyncHttpClient.shutdown();
+    }
+
+    /**
+     * @param upstream the API requested
+     * @return the environment variable holding the URL of the API
+     */
+    static String getBaseUrlVariable(final Upstream upstream) {
+        return switch (upstream) {
+            case FILING_HISTORY_API -> API_URL;
+            case DOCUMENT_API -> DOCUMENT_API_URL;
+        };
+    }
+
+    private PooledApiKeyHttpClient pooledHttpClient(final Upstream upstream) {
+        // Read afresh for each client, as ApiSdkManager reads the URLs of the APIs.
+        final var apiKey = new EnvironmentReaderImpl().getMandatoryString(CHS_API_KEY);
+        return new PooledApiKeyHttpClient(apiKey, transport, connectTimeout, timeouts.readTimeoutMillis(upstream));
+    }
 }
@@ -1,12 +1,44 @@
 package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
 
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
+import uk.gov.companieshouse.itemorderedcertifiedcopy.ItemOrderedCertifiedCopy;
 import uk.gov.companieshouse.logging.Logger;
 
+import java.net.URI;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.KafkaProducerCallback.getLogMap;
+
 /**
  * Consumes a {@link uk.gov.companieshouse.itemorderedcertifiedcopy.ItemOrderedCertifiedCopy} message
  * to obtain further info from the Filing History and Document APIs, and finally produce a
- * {@link uk.gov.companieshouse.documentsigning.SignDigitalDocument} message.
+ * {@link uk.gov.companieshouse.documentsigning.SignDigitalDocument} message.<br>
+ * <br>
+ * The filing history description is resolved at the same time as the document metadata, and the private URI as
+ * soon as the document metadata is available. Should these not all complete within the configured deadline, a
+ * {@link RetryableException} is raised, any lookups still running on the message processing executor are interrupted
+ * and any still queued there are never run. An interrupted lookup only gives up at once where what it is blocked on
+ * responds to interruption, such as socket I/O on a virtual thread; otherwise it runs on until its own timeout.
+ * Processing only completes once the {@link uk.gov.companieshouse.documentsigning.SignDigitalDocument} message has
+ * been acknowledged, so the offset of the message is never committed before then.<br>
+ * <br>
+ * With <code>api_client.non_blocking</code> enabled, the document metadata and private URI are looked up by the
+ * {@link NonBlockingFilingHistoryDocumentService} and {@link NonBlockingDocumentService}, which hold no thread while
+ * awaiting the upstream APIs. Otherwise they are looked up by the blocking services on the message processing
+ * executor.
  */
 @Service
 class CertifiedCopyProcessorService implements KafkaService {
@@ -16,32 +48,148 @@ class CertifiedCopyProcessorService implements KafkaService {
     private final DocumentService documentService;
     private final KafkaProducerService kafkaProducerService;
     private final FilingHistoryDescriptionService filingHistoryDescriptionService;
+    private final NonBlockingFilingHistoryDocumentService nonBlockingFilingHistoryDocumentService;
+    private final NonBlockingDocumentService nonBlockingDocumentService;
+    private final Executor executor;
+    private final long deadlineMillis;
+    private final boolean nonBlocking;
 
     CertifiedCopyProcessorService(Logger logger, FilingHistoryDocumentService filingHistoryDocumentService,
                                   DocumentService documentService, KafkaProducerService kafkaProducerService,
-                                  FilingHistoryDescriptionService filingHistoryDescriptionService) {
+                                  FilingHistoryDescriptionService filingHistoryDescriptionService,
+                                  NonBlockingFilingHistoryDocumentService nonBlockingFilingHistoryDocumentService,
+                                  NonBlockingDocumentService nonBlockingDocumentService,
+                                  @Qualifier("messageProcessingExecutor") Executor executor,
+                                  @Value("${consumer.message_deadline_ms:60000}") long deadlineMillis,
+                                  @Value("${api_client.non_blocking:false}") boolean nonBlocking) {
         this.logger = logger;
         this.filingHistoryDocumentService = filingHistoryDocumentService;
         this.documentService = documentService;
         this.kafkaProducerService = kafkaProducerService;
         this.filingHistoryDescriptionService = filingHistoryDescriptionService;
+        this.nonBlockingFilingHistoryDocumentService = nonBlockingFilingHistoryDocumentService;
+        this.nonBlockingDocumentService = nonBlockingDocumentService;
+        this.executor = executor;
+        this.deadlineMillis = deadlineMillis;
+        this.nonBlocking = nonBlocking;
     }
 
     @Override
     public void processMessage(KafkaServiceParameters parameters) {
+        try {
+            processMessageAsync(parameters).join();
+        } catch (CompletionException ex) {
+            throw asRuntimeException(ex.getCause());
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> processMessageAsync(KafkaServiceParameters parameters) {
+        // Sent on whichever thread completes the lookups.
+        return processMessageAsync(parameters, Runnable::run);
+    }
+
+    @Override
+    public CompletableFuture<Void> processMessageAsync(KafkaServiceParameters parameters, Executor sendExecutor) {
 
         final var certifiedCopy = parameters.data();
+        // Read up front, as a lookup still queued when the deadline passes may only run once the consumer has
+        // decoded a later message into the same record.
+        final var companyNumber = certifiedCopy.getCompanyNumber();
+        final var filingHistoryId = certifiedCopy.getFilingHistoryId();
+        final var filingHistoryDescriptionKey = certifiedCopy.getFilingHistoryDescription();
 
-        final var documentMetadata = filingHistoryDocumentService.getDocumentMetadata(
-                certifiedCopy.getCompanyNumber(),
-                certifiedCopy.getFilingHistoryId());
+        final var lookups = new Lookups();
+        final var documentMetadata = nonBlocking
+                ? nonBlockingFilingHistoryDocumentService.getDocumentMetadata(companyNumber, filingHistoryId)
+                : lookUp(() -> filingHistoryDocumentService.getDocumentMetadata(companyNumber, filingHistoryId),
+                        lookups);
 
         //convert the current filing history value to the correct description using api-enumerations
         final var filingHistoryDescription =
-                filingHistoryDescriptionService.getDescription(certifiedCopy.getFilingHistoryDescription());
+                lookUp(() -> filingHistoryDescriptionService.getDescription(filingHistoryDescriptionKey), lookups);
+
+        final var privateUri = nonBlocking
+                ? documentMetadata.thenCompose(nonBlockingDocumentService::getPrivateUri)
+                : documentMetadata.thenCompose(metadata -> lookUp(() -> documentService.getPrivateUri(metadata),
+                        lookups));
+
+        final List<CompletableFuture<?>> stages = List.of(documentMetadata, filingHistoryDescription, privateUri);
+        final var resolved = privateUri
+                .thenCombine(filingHistoryDescription, ResolvedCertifiedCopy::new)
+                .orTimeout(deadlineMillis, TimeUnit.MILLISECONDS);
+        resolved.whenComplete((result, ex) -> {
+            if (ex != null) {
+                // Cancelling a stage only completes it; the lookup behind it has to be interrupted itself.
+                lookups.cancel();
+                stages.forEach(stage -> stage.cancel(false));
+            }
+        });
+
+        return resolved
+                .exceptionallyCompose(ex -> CompletableFuture.failedFuture(translate(ex, certifiedCopy)))
+                .thenComposeAsync(result ->
+                        kafkaProducerService.sendMessage(certifiedCopy, result.privateUri(), result.description()),
+                        sendExecutor)
+                .thenApply(sendResult -> null);
+    }
+
+    /**
+     * Runs the lookup on the message processing executor as a task that can be interrupted.
+     */
+    private <T> CompletableFuture<T> lookUp(final Supplier<T> lookup, final Lookups lookups) {
+        final var result = new CompletableFuture<T>();
+        final var task = new FutureTask<Void>(() -> {
+            try {
+                result.complete(lookup.get());
+            } catch (Throwable ex) {
+                result.completeExceptionally(ex);
+            }
+        }, null);
+        lookups.add(task);
+        executor.execute(task);
+        return result;
+    }
+
+    private RuntimeException translate(final Throwable throwable, final ItemOrderedCertifiedCopy certifiedCopy) {
+        final var cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+        if (cause instanceof TimeoutException) {
+            final var error = "Processing of certified copy ID " + certifiedCopy.getItemId() + " from order "
+                    + certifiedCopy.getOrderNumber() + " did not complete within " + deadlineMillis + "ms.";
+            logger.error(error, getLogMap(certifiedCopy.getItemId(), certifiedCopy.getOrderNumber()));
+            return new RetryableException(error, cause);
+        }
+        return asRuntimeException(cause);
+    }
+
+    private static RuntimeException asRuntimeException(final Throwable throwable) {
+        return throwable instanceof RuntimeException runtimeException
+                ? runtimeException
+                : new CompletionException(throwable);
+    }
+
+    private record ResolvedCertifiedCopy(URI privateUri, String description) {
+    }
+
+    /**
+     * The lookups started for a message, interrupted should its deadline pass. A lookup only started once they have
+     * been is cancelled straight away.
+     */
+    private static final class Lookups {
+
+        private final Queue<Future<?>> tasks = new ConcurrentLinkedQueue<>();
+        private volatile boolean cancelled;
 
-        final var privateUri = documentService.getPrivateUri(documentMetadata);
+        void add(final Future<?> task) {
+            tasks.add(task);
+            if (cancelled) {
+                task.cancel(true);
+            }
+        }
 
-        kafkaProducerService.sendMessage(certifiedCopy, privateUri, filingHistoryDescription);
+        void cancel() {
+            cancelled = true;
+            tasks.forEach(task -> task.cancel(true));
+        }
     }
 }
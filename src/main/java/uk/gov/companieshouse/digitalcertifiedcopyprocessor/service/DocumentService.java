@@ -20,6 +20,7 @@ import java.util.Map;
 import static org.apache.commons.collections.CollectionUtils.isEmpty;
 import static org.springframework.http.HttpHeaders.LOCATION;
 import static org.springframework.http.HttpStatus.FOUND;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.UpstreamGuard.Upstream.DOCUMENT_API;
 
 @Service
 public class DocumentService {
@@ -32,13 +33,40 @@ public class DocumentService {
 
     private final PublicToPrivateUriConverter converter;
 
-    public DocumentService(ApiClientService apiClientService, Logger logger, PublicToPrivateUriConverter converter) {
+    private final PrivateUriCache cache;
+
+    private final UpstreamGuard upstreamGuard;
+
+    private final HedgingPolicy hedgingPolicy;
+
+    private final SingleFlight<String, URI> publicUriLookups = new SingleFlight<>();
+
+    public DocumentService(ApiClientService apiClientService,
+                           Logger logger,
+                           PublicToPrivateUriConverter converter,
+                           PrivateUriCache cache,
+                           UpstreamGuard upstreamGuard,
+                           HedgingPolicy hedgingPolicy) {
         this.apiClientService = apiClientService;
         this.logger = logger;
         this.converter = converter;
+        this.cache = cache;
+        this.upstreamGuard = upstreamGuard;
+        this.hedgingPolicy = hedgingPolicy;
     }
 
+    /**
+     * Gets the private URI of the document, from the {@link PrivateUriCache cache} should it have been derived
+     * before for the same document metadata path.
+     * @param documentMetadata the document metadata link, with or without a hostname
+     * @return the private URI of the document
+     */
     public URI getPrivateUri(final String documentMetadata) {
+        return cache.get(stripHostnameFromDocumentMetadata(documentMetadata),
+                () -> derivePrivateUri(documentMetadata));
+    }
+
+    private URI derivePrivateUri(final String documentMetadata) {
         logger.info("Getting private URI for document metadata " + documentMetadata + ".",
                 getLogMap(documentMetadata));
         final var publicUri = getPublicUri(documentMetadata);
@@ -55,19 +83,41 @@ public class DocumentService {
      * we need to extract just the path from it.
      */
     private String stripHostnameFromDocumentMetadata(String documentMetadata) {
+        final var path = getDocumentMetadataPath(documentMetadata);
+        if (path == null) {
+            logger.info("No valid URL provided in documentMetadata, assuming only path provided.");
+            return documentMetadata;
+        }
+        logger.debug("Stripping path " + path + " from full URL: " + documentMetadata, getLogMap(documentMetadata));
+        return path;
+    }
+
+    /**
+     * @param documentMetadata the document metadata link, with or without a hostname
+     * @return the path of the document metadata link, or <code>null</code> should it not be a valid URI
+     */
+    static String getDocumentMetadataPath(final String documentMetadata) {
         try {
-            URI documentURL = new URI(documentMetadata);
-            logger.debug("Stripping path " + documentURL.getPath() + " from full URL: " + documentMetadata,
-                    getLogMap(documentMetadata));
-            return documentURL.getPath();
+            return new URI(documentMetadata).getPath();
         } catch (Exception e) {
-            logger.info("No valid URL provided in documentMetadata, assuming only path provided.");
+            return null;
         }
-        return documentMetadata;
     }
 
+    /**
+     * Gets the presigned public URI of the document. Concurrent lookups of the same document share a single document
+     * content request, which is made only should the {@link UpstreamGuard} permit it, and repeated should the
+     * {@link HedgingPolicy} find it slow to answer.
+     * @param documentMetadata the document metadata link, with or without a hostname
+     * @return the public URI of the document
+     */
     public URI getPublicUri(final String documentMetadata) {
         final var uri = GET_DOCUMENT_CONTENT_URL.expand(stripHostnameFromDocumentMetadata(documentMetadata)).toString();
+        return publicUriLookups.execute(uri, () -> hedgingPolicy.call(
+                () -> upstreamGuard.call(DOCUMENT_API, () -> lookUpPublicUri(uri, documentMetadata))));
+    }
+
+    private URI lookUpPublicUri(final String uri, final String documentMetadata) {
         try {
             final var response = getDocumentContent(uri, documentMetadata);
             return getFirstLocationAsUri(response, documentMetadata);
@@ -120,7 +170,7 @@ public class DocumentService {
 
     private ApiClient getApiClient(final String documentMetadata) {
         try {
-            return apiClientService.getApiClient();
+            return apiClientService.getApiClient(DOCUMENT_API);
         } catch (RuntimeException re) {
             // Should this happen (unlikely), it would likely not be a recoverable issue.
             final var error = "Caught RuntimeException getting API client: " + re.getMessage();
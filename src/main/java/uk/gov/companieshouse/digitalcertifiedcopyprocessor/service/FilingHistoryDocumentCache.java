@@ -0,0 +1,155 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.FilingHistoryDocumentNotFoundException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Holds the document metadata links recently looked up for each filing history document, so that a filing ordered
+ * repeatedly need only be looked up once. A filing's document metadata link does not change once the filing exists, so
+ * entries are kept until they expire or are evicted to keep the cache within its maximum weight. Each entry weighs the
+ * number of characters in its key and value.<br>
+ * <br>
+ * Filing history documents found not to exist are also held, for
+ * <code>filing_history_document.negative_cache.ttl_ms</code>, so that repeated orders of a missing filing fail
+ * straight away with a {@link FilingHistoryDocumentNotFoundException} rather than each looking it up again. They are
+ * held only briefly, in case the filing is yet to be made available.<br>
+ * <br>
+ * The hits, misses and evictions of the caches are published as the <code>cache.*</code> metrics tagged
+ * <code>cache=filing-history-document-metadata</code> and <code>cache=filing-history-document-not-found</code>.
+ */
+@Component
+public class FilingHistoryDocumentCache {
+
+    static final String CACHE_NAME = "filing-history-document-metadata";
+    static final String NOT_FOUND_CACHE_NAME = "filing-history-document-not-found";
+
+    private final Cache<FilingHistoryDocument, String> cache;
+
+    /** Holds the message of the {@link FilingHistoryDocumentNotFoundException} for each missing document. */
+    private final Cache<FilingHistoryDocument, String> notFound;
+
+    public FilingHistoryDocumentCache(
+            @Value("${filing_history_document.cache.max_weight:1000000}") long maxWeight,
+            @Value("${filing_history_document.cache.ttl_ms:86400000}") long timeToLive,
+            @Value("${filing_history_document.negative_cache.max_size:10000}") long notFoundMaxSize,
+            @Value("${filing_history_document.negative_cache.ttl_ms:300000}") long notFoundTimeToLive,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((FilingHistoryDocument document, String metadata) ->
+                        String.valueOf(document.companyNumber()).length()
+                                + String.valueOf(document.filingHistoryId()).length()
+                                + metadata.length())
+                .expireAfterWrite(Duration.ofMillis(timeToLive))
+                .recordStats()
+                .build();
+        this.notFound = Caffeine.newBuilder()
+                .maximumSize(notFoundMaxSize)
+                .expireAfterWrite(Duration.ofMillis(notFoundTimeToLive))
+                .recordStats()
+                .build();
+        meterRegistry.ifAvailable(registry -> {
+            CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+            CaffeineCacheMetrics.monitor(registry, notFound, NOT_FOUND_CACHE_NAME);
+        });
+    }
+
+    /**
+     * Gets the document metadata link for the filing history document, looking it up only if not already held.
+     * Nothing is held should the lookup fail, unless for the document not being found.
+     * @param companyNumber the company number
+     * @param filingHistoryId the filing history document ID
+     * @param lookup looks up the document metadata link
+     * @return the document metadata link
+     * @throws FilingHistoryDocumentNotFoundException should the document have been found not to exist
+     */
+    public String get(final String companyNumber, final String filingHistoryId, final Supplier<String> lookup) {
+        final var document = new FilingHistoryDocument(companyNumber, filingHistoryId);
+        final var cached = cache.getIfPresent(document);
+        if (cached != null) {
+            return cached;
+        }
+        throwIfNotFound(document);
+        // Looked up outside the cache, so that a slow lookup does not hold up lookups of other filings.
+        final String metadata;
+        try {
+            metadata = lookup.get();
+        } catch (FilingHistoryDocumentNotFoundException ex) {
+            notFound.put(document, ex.getMessage());
+            throw ex;
+        }
+        if (metadata != null) {
+            cache.put(document, metadata);
+        }
+        return metadata;
+    }
+
+    /**
+     * Gets the document metadata link for the filing history document, looking it up asynchronously only if not
+     * already held. Nothing is held should the lookup fail, unless for the document not being found.
+     * @param companyNumber the company number
+     * @param filingHistoryId the filing history document ID
+     * @param lookup starts looking up the document metadata link
+     * @return the document metadata link, once available, or a {@link FilingHistoryDocumentNotFoundException} should
+     * the document have been found not to exist
+     */
+    public CompletableFuture<String> getAsync(final String companyNumber,
+                                              final String filingHistoryId,
+                                              final Supplier<CompletableFuture<String>> lookup) {
+        final var document = new FilingHistoryDocument(companyNumber, filingHistoryId);
+        final var cached = cache.getIfPresent(document);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        try {
+            throwIfNotFound(document);
+        } catch (FilingHistoryDocumentNotFoundException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        return lookup.get().whenComplete((metadata, ex) -> {
+            final var cause = ex instanceof CompletionException ? ex.getCause() : ex;
+            if (cause instanceof FilingHistoryDocumentNotFoundException notFoundException) {
+                notFound.put(document, notFoundException.getMessage());
+            } else if (metadata != null) {
+                cache.put(document, metadata);
+            }
+        });
+    }
+
+    /**
+     * Discards every entry held.
+     */
+    public void clear() {
+        cache.invalidateAll();
+        notFound.invalidateAll();
+    }
+
+    /**
+     * Carries out any evictions pending, rather than leaving them to be done in the course of later lookups.
+     */
+    void cleanUp() {
+        cache.cleanUp();
+        notFound.cleanUp();
+    }
+
+    private void throwIfNotFound(final FilingHistoryDocument document) {
+        final var notFoundMessage = notFound.getIfPresent(document);
+        if (notFoundMessage != null) {
+            throw new FilingHistoryDocumentNotFoundException(notFoundMessage);
+        }
+    }
+
+    private record FilingHistoryDocument(String companyNumber, String filingHistoryId) {
+    }
+}
@@ -8,6 +8,7 @@ import uk.gov.companieshouse.api.InternalApiClient;
 import uk.gov.companieshouse.api.error.ApiErrorResponseException;
 import uk.gov.companieshouse.api.handler.exception.URIValidationException;
 import uk.gov.companieshouse.api.model.filinghistory.FilingApi;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.FilingHistoryDocumentNotFoundException;
 import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.NonRetryableException;
 import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
 import uk.gov.companieshouse.logging.Logger;
@@ -17,6 +18,7 @@ import java.util.List;
 import java.util.Map;
 
 import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.UpstreamGuard.Upstream.FILING_HISTORY_API;
 
 @Service
 public class FilingHistoryDocumentService {
@@ -29,25 +31,50 @@ public class FilingHistoryDocumentService {
 
     private final Logger logger;
 
+    private final FilingHistoryDocumentCache cache;
+
+    private final UpstreamGuard upstreamGuard;
+
+    private final SingleFlight<String, String> lookups = new SingleFlight<>();
+
     public FilingHistoryDocumentService(final ApiClientService apiClientService,
-                                        final Logger logger) {
+                                        final Logger logger,
+                                        final FilingHistoryDocumentCache cache,
+                                        final UpstreamGuard upstreamGuard) {
         this.apiClientService = apiClientService;
         this.logger = logger;
+        this.cache = cache;
+        this.upstreamGuard = upstreamGuard;
     }
 
     /**
-     * Gets the filing history document metadata for the company number and filing history document ID provided.
+     * Gets the filing history document metadata for the company number and filing history document ID provided,
+     * from the {@link FilingHistoryDocumentCache cache} should it have been looked up recently. Concurrent lookups of
+     * the same filing history document share a single call to the filing history API, which is made only should the
+     * {@link UpstreamGuard} permit it.
      * @param companyNumber the company number
      * @param filingHistoryDocumentId the filing history document ID
      * @return the document metadata link
+     * @throws FilingHistoryDocumentNotFoundException should the filing history API report that the document does not
+     * exist, now or recently
      */
     public String getDocumentMetadata(
             final String companyNumber,
             final String filingHistoryDocumentId) {
+        return cache.get(companyNumber, filingHistoryDocumentId, () -> {
+            final String uri = GET_FILING_HISTORY_DOCUMENT.expand(companyNumber, filingHistoryDocumentId).toString();
+            return lookups.execute(uri, () -> upstreamGuard.call(FILING_HISTORY_API,
+                    () -> lookUpDocumentMetadata(companyNumber, filingHistoryDocumentId, uri)));
+        });
+    }
+
+    private String lookUpDocumentMetadata(
+            final String companyNumber,
+            final String filingHistoryDocumentId,
+            final String uri) {
         logger.info("Getting filing history document " + filingHistoryDocumentId + " for company number "
                 + companyNumber + ".", getLogMap(companyNumber, filingHistoryDocumentId));
         final ApiClient apiClient = getInternalApiClient(companyNumber, filingHistoryDocumentId);
-        final String uri = GET_FILING_HISTORY_DOCUMENT.expand(companyNumber, filingHistoryDocumentId).toString();
         try {
             final FilingApi filing = apiClient.filing().get(uri).execute().getData();
             final String metadata = filing.getLinks().getDocumentMetaData();
@@ -55,7 +82,7 @@ public class FilingHistoryDocumentService {
                     getLogMap(companyNumber, filingHistoryDocumentId, metadata));
             return metadata;
         } catch (ApiErrorResponseException ex) {
-            throw getRetryableException(ex, apiClient, companyNumber, filingHistoryDocumentId, uri);
+            throw getException(ex, apiClient, companyNumber, filingHistoryDocumentId, uri);
         } catch (URIValidationException ex) {
             // Should this happen (unlikely), it is a programmatic error, hence not recoverable.
             final String error = "Invalid URI " + uri + " for filing";
@@ -72,14 +99,15 @@ public class FilingHistoryDocumentService {
      * @param companyNumber the number of the company for which the filing history is looked up
      * @param filingHistoryDocumentId the filing history document ID
      * @param uri the URI used to communicate with the company filing history API
-     * @return the {@link RetryableException} exception to report the problem
+     * @return the {@link FilingHistoryDocumentNotFoundException} exception should the filing history document not
+     * exist, otherwise the {@link RetryableException} exception to report the problem
      */
-    private RetryableException getRetryableException(final ApiErrorResponseException apiException,
-                                                     final ApiClient client,
-                                                     final String companyNumber,
-                                                     final String filingHistoryDocumentId,
-                                                     final String uri) {
-        final RetryableException propagatedException;
+    private RuntimeException getException(final ApiErrorResponseException apiException,
+                                          final ApiClient client,
+                                          final String companyNumber,
+                                          final String filingHistoryDocumentId,
+                                          final String uri) {
+        final RuntimeException propagatedException;
         final var status = HttpStatus.valueOf(apiException.getStatusCode());
         final String error;
         if (status.is5xxServerError()) {
@@ -90,14 +118,26 @@ public class FilingHistoryDocumentService {
                     " for company number " + companyNumber + ": " + apiException.getMessage();
         }
         logger.error(error, getLogMap(companyNumber, filingHistoryDocumentId, status, error));
-        propagatedException = new RetryableException(error);
+        if (isNotFound(status)) {
+            propagatedException = new FilingHistoryDocumentNotFoundException(error);
+        } else {
+            propagatedException = new RetryableException(error);
+        }
         return propagatedException;
     }
 
+    /**
+     * @param status the status of the response from the filing history API
+     * @return whether the status reports that the filing history document does not exist
+     */
+    static boolean isNotFound(final HttpStatus status) {
+        return status == HttpStatus.NOT_FOUND || status == HttpStatus.GONE;
+    }
+
     private InternalApiClient getInternalApiClient(final String companyNumber,
                                                    final String filingHistoryDocumentId) {
         try {
-            return apiClientService.getInternalApiClient();
+            return apiClientService.getInternalApiClient(FILING_HISTORY_API);
         } catch (RuntimeException re) {
             // Should this happen (unlikely), it would likely not be a recoverable issue.
             final var error = "Caught RuntimeException getting API client: " + re.getMessage();
@@ -0,0 +1,227 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hedges the document content requests made to the document API, which only ever redirect to the document, so are
+ * safe and cheap to repeat. With <code>document.hedging.enabled</code>, should a request not have answered within the
+ * <code>document.hedging.percentile</code> percentile of the latencies of the last
+ * <code>document.hedging.window_size</code> requests to answer, a second, identical request is made, and whichever
+ * answers first used. A request only fails once every request made for it has failed.<br>
+ * <br>
+ * The hedged requests made are kept within a budget of <code>document.hedging.budget_percent</code> percent of the
+ * requests made, with up to {@value #MAX_BURST} hedged requests allowed in quick succession should budget have built
+ * up. Hedged requests are counted by the <code>document.content.hedged.requests</code> metric.
+ */
+@Component
+public class HedgingPolicy {
+
+    static final int MAX_BURST = 10;
+
+    /** The credit a single hedged request costs, with each request made earning <code>budget_percent</code>. */
+    private static final int HEDGE_COST = 100;
+
+    /** Latencies are not hedged below this, as a request this quick is not worth repeating. */
+    private static final long MIN_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final boolean enabled;
+
+    private final int budgetPercent;
+
+    private final LatencyWindow latencies;
+
+    private final AtomicLong hedges = new AtomicLong();
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final ScheduledThreadPoolExecutor timer = newTimer();
+
+    private long credit;
+
+    public HedgingPolicy(@Value("${document.hedging.enabled:false}") boolean enabled,
+                         @Value("${document.hedging.percentile:95}") double percentile,
+                         @Value("${document.hedging.budget_percent:5}") int budgetPercent,
+                         @Value("${document.hedging.window_size:1000}") int windowSize,
+                         ObjectProvider<MeterRegistry> meterRegistry) {
+        this.enabled = enabled;
+        this.budgetPercent = budgetPercent;
+        this.latencies = new LatencyWindow(windowSize, percentile);
+        meterRegistry.ifAvailable(registry ->
+                FunctionCounter.builder("document.content.hedged.requests", hedges, AtomicLong::get)
+                        .description("Document content requests repeated for having not answered in time")
+                        .register(registry));
+    }
+
+    /**
+     * Makes the call, hedging it should it be slow to return. Each attempt is made on a virtual thread of its own, and
+     * is interrupted as soon as it is no longer needed: once another attempt has succeeded, or should the calling
+     * thread itself be interrupted.
+     * @param attempt makes a single attempt at the call
+     * @return the result of the first attempt to succeed
+     */
+    public <T> T call(final Supplier<T> attempt) {
+        if (!enabled) {
+            return attempt.get();
+        }
+        final Set<Future<?>> running = ConcurrentHashMap.newKeySet();
+        final var settled = new AtomicBoolean();
+        final var result = callAsync(() -> submit(attempt, running, settled));
+        result.whenComplete((value, ex) -> {
+            settled.set(true);
+            running.forEach(task -> task.cancel(true));
+        });
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            // Also cancels any hedged attempt yet to be made.
+            result.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new RetryableException("Interrupted waiting for document content request.", ex);
+        } catch (ExecutionException ex) {
+            // The exception the last attempt threw is rethrown as is, to be handled just as it would have been.
+            if (ex.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (ex.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new CompletionException(ex.getCause());
+        }
+    }
+
+    /**
+     * Starts the asynchronous call, hedging it should it be slow to complete.
+     * @param attempt starts a single attempt at the call
+     * @return the result of the first attempt to succeed, once complete
+     */
+    public <T> CompletableFuture<T> callAsync(final Supplier<CompletableFuture<T>> attempt) {
+        if (!enabled) {
+            return attempt.get();
+        }
+        earnCredit();
+        final var result = new CompletableFuture<T>();
+        final var attempts = new AtomicInteger(1);
+        final var failures = new AtomicInteger();
+        start(attempt, result, attempts, failures);
+        final var delay = latencies.percentileNanos();
+        if (delay > 0 && !result.isDone()) {
+            final var hedge = timer.schedule(() -> executor.execute(() -> hedge(attempt, result, attempts, failures)),
+                    Math.max(delay, MIN_DELAY_NANOS), TimeUnit.NANOSECONDS);
+            result.whenComplete((value, ex) -> hedge.cancel(false));
+        }
+        return result;
+    }
+
+    @PreDestroy
+    void close() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private <T> void hedge(final Supplier<CompletableFuture<T>> attempt,
+                           final CompletableFuture<T> result,
+                           final AtomicInteger attempts,
+                           final AtomicInteger failures) {
+        if (result.isDone() || !spendCredit()) {
+            return;
+        }
+        // Counted before checking again, so that the last attempt to fail either sees this one, or has already
+        // completed the result and this one is not made.
+        attempts.incrementAndGet();
+        if (result.isDone()) {
+            earnCredit(HEDGE_COST);
+            return;
+        }
+        hedges.incrementAndGet();
+        start(attempt, result, attempts, failures);
+    }
+
+    /**
+     * Runs the attempt on the executor as a task that can be interrupted, which a stage of a
+     * {@link CompletableFuture} cannot be. An attempt started once the call has settled is interrupted at once.
+     */
+    private <T> CompletableFuture<T> submit(final Supplier<T> attempt,
+                                            final Set<Future<?>> running,
+                                            final AtomicBoolean settled) {
+        final var outcome = new CompletableFuture<T>();
+        final var task = executor.submit(() -> {
+            try {
+                outcome.complete(attempt.get());
+            } catch (RuntimeException | Error ex) {
+                outcome.completeExceptionally(ex);
+            }
+        });
+        running.add(task);
+        if (settled.get()) {
+            task.cancel(true);
+        }
+        return outcome;
+    }
+
+    private <T> void start(final Supplier<CompletableFuture<T>> attempt,
+                           final CompletableFuture<T> result,
+                           final AtomicInteger attempts,
+                           final AtomicInteger failures) {
+        final long start = System.nanoTime();
+        CompletableFuture<T> outcome;
+        try {
+            outcome = attempt.get();
+        } catch (RuntimeException ex) {
+            outcome = CompletableFuture.failedFuture(ex);
+        }
+        outcome.whenComplete((value, ex) -> {
+            if (ex == null) {
+                latencies.record(System.nanoTime() - start);
+                result.complete(value);
+            } else if (failures.incrementAndGet() == attempts.get()) {
+                result.completeExceptionally(ex instanceof CompletionException ? ex.getCause() : ex);
+            }
+        });
+    }
+
+    private void earnCredit() {
+        earnCredit(budgetPercent);
+    }
+
+    private synchronized void earnCredit(final int earned) {
+        credit = Math.min(credit + earned, (long) MAX_BURST * HEDGE_COST);
+    }
+
+    /**
+     * A timer cancelled as its request answered in time is removed straight away, rather than held until it is due.
+     */
+    private static ScheduledThreadPoolExecutor newTimer() {
+        final var timer = new ScheduledThreadPoolExecutor(1,
+                Thread.ofPlatform().name("document-hedging-timer").daemon().factory());
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    private synchronized boolean spendCredit() {
+        if (credit < HEDGE_COST) {
+            return false;
+        }
+        credit -= HEDGE_COST;
+        return true;
+    }
+}
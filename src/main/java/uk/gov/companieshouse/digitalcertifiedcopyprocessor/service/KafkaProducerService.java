@@ -1,38 +1,77 @@
 package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
 
+import org.apache.kafka.common.errors.RetriableException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
 import uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka.SignDigitalDocumentFactory;
 import uk.gov.companieshouse.documentsigning.SignDigitalDocument;
 import uk.gov.companieshouse.itemorderedcertifiedcopy.ItemOrderedCertifiedCopy;
 import uk.gov.companieshouse.logging.Logger;
 
 import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.KafkaProducerCallback.getLogMap;
 
+/**
+ * Sends {@link SignDigitalDocument} messages. Sends are pipelined, but no more than the configured send window
+ * may be awaiting acknowledgement at any one time; a send beyond that is queued until an earlier send completes,
+ * without holding up the thread asking for it. Only a send joining the transaction of the calling thread waits on
+ * that thread for its turn, as it must be made from there. A send failing with an error Kafka considers transient is
+ * re-driven, after a short delay, up to the configured number of times before it is reported as failed.
+ */
 @Service
 public class KafkaProducerService {
 
+    private static final long REDRIVE_DELAY_MILLIS = 1000L;
+
     private final KafkaTemplate<String, SignDigitalDocument> kafkaTemplate;
     private final Logger logger;
     private final SignDigitalDocumentFactory signDigitalDocumentFactory;
 
     private final String signDigitalDocumentTopic;
+    private final int sendRedrives;
+    private final Lock sendWindowLock = new ReentrantLock();
+    private final Queue<CompletableFuture<Void>> queuedSends = new ArrayDeque<>();
+    private int freeSendSlots;
+    private final Executor redriveExecutor =
+            CompletableFuture.delayedExecutor(REDRIVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    private final Executor queuedSendExecutor = Thread::startVirtualThread;
 
     public KafkaProducerService(KafkaTemplate<String, SignDigitalDocument> kafkaTemplate,
                                 Logger logger,
                                 SignDigitalDocumentFactory signDigitalDocumentFactory,
                                 @Value("${kafka.topics.sign-digital-document}")
-                                String signDigitalDocumentTopic) {
+                                String signDigitalDocumentTopic,
+                                @Value("${kafka.producer.send_window:100}") int sendWindow,
+                                @Value("${kafka.producer.send_redrives:2}") int sendRedrives) {
         this.kafkaTemplate = kafkaTemplate;
         this.logger = logger;
         this.signDigitalDocumentFactory = signDigitalDocumentFactory;
         this.signDigitalDocumentTopic = signDigitalDocumentTopic;
+        this.freeSendSlots = sendWindow;
+        this.sendRedrives = sendRedrives;
     }
 
-    public void sendMessage(final ItemOrderedCertifiedCopy certifiedCopy, final URI privateUri, final String filingHistoryDescription) {
+    /**
+     * Sends a {@link SignDigitalDocument} message for the certified copy.
+     *
+     * @return a future completed once the message has been acknowledged by the broker, or completed exceptionally
+     * with a {@link RetryableException} if it could not be delivered
+     */
+    public CompletableFuture<SendResult<String, SignDigitalDocument>> sendMessage(
+            final ItemOrderedCertifiedCopy certifiedCopy, final URI privateUri, final String filingHistoryDescription) {
 
         final var itemId = certifiedCopy.getItemId();
         final var orderNumber = certifiedCopy.getOrderNumber();
@@ -40,9 +79,130 @@ public class KafkaProducerService {
                 getLogMap(itemId, orderNumber));
 
         final var message = signDigitalDocumentFactory.buildMessage(certifiedCopy, privateUri, filingHistoryDescription);
-        final var future = kafkaTemplate.send(signDigitalDocumentTopic, message);
 
-        future.whenComplete(new KafkaProducerCallback(logger, signDigitalDocumentTopic, message));
+        final var sendSlot = takeSendSlot();
+        if (!sendSlot.isDone() && kafkaTemplate.isTransactional() && kafkaTemplate.inTransaction()) {
+            awaitSendSlot(sendSlot, itemId, orderNumber);
+        }
+        // A queued send is made on a thread of its own, rather than on the producer's network thread that
+        // acknowledged the send it follows, as sending may block.
+        final var future = sendSlot.isDone()
+                ? sendInSlot(message, itemId, orderNumber)
+                : sendSlot.thenComposeAsync(slot -> sendInSlot(message, itemId, orderNumber), queuedSendExecutor);
+
+        return future.whenComplete(new KafkaProducerCallback(logger, signDigitalDocumentTopic, message))
+                .exceptionallyCompose(ex -> CompletableFuture.failedFuture(new RetryableException(
+                        "Unable to deliver message for certified copy ID " + itemId + " from order " + orderNumber
+                                + " to topic " + signDigitalDocumentTopic + ".", ex)));
+    }
+
+    private CompletableFuture<SendResult<String, SignDigitalDocument>> sendInSlot(final SignDigitalDocument message,
+                                                                                  final String itemId,
+                                                                                  final String orderNumber) {
+        final CompletableFuture<SendResult<String, SignDigitalDocument>> future;
+        try {
+            future = send(message, sendRedrives, itemId, orderNumber);
+        } catch (RuntimeException ex) {
+            releaseSendSlot();
+            throw ex;
+        }
+        return future.whenComplete((result, ex) -> releaseSendSlot());
+    }
+
+    /**
+     * @return a future completed once a slot in the send window has been taken, already so if one was free
+     */
+    private CompletableFuture<Void> takeSendSlot() {
+        sendWindowLock.lock();
+        try {
+            if (freeSendSlots > 0) {
+                freeSendSlots--;
+                return CompletableFuture.completedFuture(null);
+            }
+            final var sendSlot = new CompletableFuture<Void>();
+            queuedSends.add(sendSlot);
+            return sendSlot;
+        } finally {
+            sendWindowLock.unlock();
+        }
+    }
+
+    private void awaitSendSlot(final CompletableFuture<Void> sendSlot, final String itemId, final String orderNumber) {
+        try {
+            sendSlot.get();
+        } catch (InterruptedException ex) {
+            // Handed on should the slot have been given to this send regardless.
+            if (!sendSlot.cancel(false)) {
+                releaseSendSlot();
+            }
+            Thread.currentThread().interrupt();
+            throw new RetryableException("Interrupted waiting to send message for certified copy ID " + itemId
+                    + " from order " + orderNumber + ".", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Send slot cannot fail.", ex);
+        }
     }
 
+    /**
+     * Hands the slot on to the send queued longest, if any still awaits one, or otherwise frees it.
+     */
+    private void releaseSendSlot() {
+        while (true) {
+            final CompletableFuture<Void> next;
+            sendWindowLock.lock();
+            try {
+                next = queuedSends.poll();
+                if (next == null) {
+                    freeSendSlots++;
+                    return;
+                }
+            } finally {
+                sendWindowLock.unlock();
+            }
+            // Completed outside the lock, as this runs the send it was queued for.
+            if (next.complete(null)) {
+                return;
+            }
+        }
+    }
+
+    private CompletableFuture<SendResult<String, SignDigitalDocument>> send(final SignDigitalDocument message,
+                                                                            final int redrivesLeft,
+                                                                            final String itemId,
+                                                                            final String orderNumber) {
+        // Decided on the producer's network thread, which the failed send completes on, but only re-driven, after the
+        // delay, off it. A failed send leaves any transaction it was part of to be aborted, so is never re-driven
+        // within one.
+        return send(message)
+                .exceptionallyCompose(ex -> {
+                    if (redrivesLeft > 0 && !kafkaTemplate.isTransactional() && isTransient(ex)) {
+                        logger.error("Transient error delivering message for certified copy ID " + itemId
+                                + " from order " + orderNumber + ", re-driving: " + ex.getMessage(),
+                                getLogMap(itemId, orderNumber));
+                        return CompletableFuture.supplyAsync(
+                                        () -> send(message, redrivesLeft - 1, itemId, orderNumber), redriveExecutor)
+                                .thenCompose(Function.identity());
+                    }
+                    return CompletableFuture.failedFuture(ex);
+                });
+    }
+
+    /**
+     * A transactional template joins the transaction of the listener thread it is called on, if it has one, and
+     * otherwise sends in a transaction of its own.
+     */
+    private CompletableFuture<SendResult<String, SignDigitalDocument>> send(final SignDigitalDocument message) {
+        return kafkaTemplate.isTransactional() && !kafkaTemplate.inTransaction()
+                ? kafkaTemplate.executeInTransaction(operations -> operations.send(signDigitalDocumentTopic, message))
+                : kafkaTemplate.send(signDigitalDocumentTopic, message);
+    }
+
+    private static boolean isTransient(final Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RetriableException) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
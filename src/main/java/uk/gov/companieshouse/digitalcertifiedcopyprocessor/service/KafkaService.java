@@ -1,5 +1,8 @@
 package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * Processes an incoming message.
  */
@@ -11,4 +14,24 @@ public interface KafkaService {
      * @param parameters Any parameters required when processing the message.
      */
     void processMessage(KafkaServiceParameters parameters);
-}
\ No newline at end of file
+
+    /**
+     * Processes an incoming message without blocking the calling thread.
+     *
+     * @param parameters Any parameters required when processing the message.
+     * @return A future completed once the message has been processed, or completed exceptionally with the
+     * exception {@link #processMessage(KafkaServiceParameters)} would have thrown.
+     */
+    CompletableFuture<Void> processMessageAsync(KafkaServiceParameters parameters);
+
+    /**
+     * Processes an incoming message without blocking the calling thread, producing any resulting message on the
+     * executor given.
+     *
+     * @param parameters   Any parameters required when processing the message.
+     * @param sendExecutor The executor on which any resulting message is sent.
+     * @return A future completed once the message has been processed, or completed exceptionally with the
+     * exception {@link #processMessage(KafkaServiceParameters)} would have thrown.
+     */
+    CompletableFuture<Void> processMessageAsync(KafkaServiceParameters parameters, Executor sendExecutor);
+}
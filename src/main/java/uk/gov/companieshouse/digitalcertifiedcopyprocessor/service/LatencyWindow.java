@@ -0,0 +1,54 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
+
+import java.util.Arrays;
+
+/**
+ * Holds the latencies of the most recent calls, from which a percentile of them is estimated. The percentile is only
+ * recalculated once every tenth of the window has been replaced, so recording a latency stays cheap.
+ */
+final class LatencyWindow {
+
+    private final long[] latencies;
+
+    private final double percentile;
+
+    private final int minimumSamples;
+
+    private final int recalculateEvery;
+
+    private int next;
+
+    private long samples;
+
+    private volatile long percentileNanos;
+
+    /**
+     * @param size the number of most recent latencies held
+     * @param percentile the percentile estimated, between 0 and 100
+     */
+    LatencyWindow(final int size, final double percentile) {
+        this.latencies = new long[size];
+        this.percentile = percentile;
+        this.minimumSamples = Math.min(size, 100);
+        this.recalculateEvery = Math.max(1, size / 10);
+    }
+
+    synchronized void record(final long latencyNanos) {
+        latencies[next] = latencyNanos;
+        next = (next + 1) % latencies.length;
+        samples++;
+        if (samples >= minimumSamples && samples % recalculateEvery == 0) {
+            final var held = Arrays.copyOf(latencies, (int) Math.min(samples, latencies.length));
+            Arrays.sort(held);
+            final var index = (int) Math.ceil(percentile / 100 * held.length) - 1;
+            percentileNanos = held[Math.clamp(index, 0, held.length - 1)];
+        }
+    }
+
+    /**
+     * @return the estimated percentile of the latencies held in nanoseconds, or 0 until enough have been recorded
+     */
+    long percentileNanos() {
+        return percentileNanos;
+    }
+}
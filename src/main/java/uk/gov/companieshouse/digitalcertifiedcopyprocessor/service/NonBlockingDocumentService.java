@@ -0,0 +1,177 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriTemplate;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.converter.PublicToPrivateUriConverter;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.NonRetryableException;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.util.DataMap;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.springframework.http.HttpHeaders.LOCATION;
+import static org.springframework.http.HttpStatus.FOUND;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.DocumentService.getDocumentMetadataPath;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.UpstreamGuard.Upstream.DOCUMENT_API;
+
+/**
+ * The non-blocking counterpart of the {@link DocumentService}, selected with <code>api_client.non_blocking</code>. The
+ * document content is requested with the asynchronous client provided by the {@link ApiClientService}, and the public
+ * URI read from the <code>Location</code> header of the redirect once it arrives, so that no thread waits on the
+ * document API. Lookups share the {@link PrivateUriCache cache}, and concurrent lookups of the same document share a
+ * single request, guarded by the same {@link UpstreamGuard} and hedged by the same {@link HedgingPolicy}, just as with
+ * the blocking service. Failures are reported with the same exceptions.
+ */
+@Service
+public class NonBlockingDocumentService {
+
+    private static final UriTemplate GET_DOCUMENT_CONTENT_URL = new UriTemplate("{documentMetadata}/content");
+
+    private final ApiClientService apiClientService;
+
+    private final Logger logger;
+
+    private final PublicToPrivateUriConverter converter;
+
+    private final PrivateUriCache cache;
+
+    private final UpstreamGuard upstreamGuard;
+
+    private final HedgingPolicy hedgingPolicy;
+
+    private final SingleFlight<String, URI> publicUriLookups = new SingleFlight<>();
+
+    public NonBlockingDocumentService(ApiClientService apiClientService,
+                                      Logger logger,
+                                      PublicToPrivateUriConverter converter,
+                                      PrivateUriCache cache,
+                                      UpstreamGuard upstreamGuard,
+                                      HedgingPolicy hedgingPolicy) {
+        this.apiClientService = apiClientService;
+        this.logger = logger;
+        this.converter = converter;
+        this.cache = cache;
+        this.upstreamGuard = upstreamGuard;
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    /**
+     * Gets the private URI of the document.
+     * @param documentMetadata the document metadata link, with or without a hostname
+     * @return the private URI of the document, once available
+     */
+    public CompletableFuture<URI> getPrivateUri(final String documentMetadata) {
+        final var path = getPath(documentMetadata);
+        return cache.getAsync(path, () -> getPublicUri(documentMetadata).thenApply(publicUri -> {
+            final var privateUri = converter.convertToPrivateUri(publicUri);
+            logger.info("Got private URI " + privateUri + " for document metadata " + documentMetadata + ".",
+                    getLogMap(documentMetadata, publicUri, privateUri));
+            return privateUri;
+        }));
+    }
+
+    /**
+     * Gets the presigned public URI of the document.
+     * @param documentMetadata the document metadata link, with or without a hostname
+     * @return the public URI of the document, once available
+     */
+    public CompletableFuture<URI> getPublicUri(final String documentMetadata) {
+        final var uri = GET_DOCUMENT_CONTENT_URL.expand(getPath(documentMetadata)).toString();
+        return publicUriLookups.executeAsync(uri, () -> hedgingPolicy.callAsync(
+                () -> upstreamGuard.callAsync(DOCUMENT_API, () -> lookUpPublicUri(uri, documentMetadata))));
+    }
+
+    private CompletableFuture<URI> lookUpPublicUri(final String uri, final String documentMetadata) {
+        logger.info("Getting public URI for document metadata " + documentMetadata + ".",
+                getLogMap(documentMetadata));
+        final HttpRequest request;
+        try {
+            request = apiClientService.newAsyncRequest(DOCUMENT_API, uri).GET().build();
+        } catch (RuntimeException re) {
+            // Should this happen (unlikely), it would likely not be a recoverable issue.
+            final var error = "Caught RuntimeException getting API client: " + re.getMessage();
+            logger.error(error, getLogMap(documentMetadata));
+            return CompletableFuture.failedFuture(new NonRetryableException(error, re));
+        }
+        return apiClientService.getAsyncHttpClient()
+                .sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, ex) -> {
+                    if (ex != null) {
+                        final var cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                        final var error = "Caught " + cause.getClass().getSimpleName() + " with message '"
+                                + cause.getMessage() + "' getting public URI using document content request "
+                                + uri + ".";
+                        logger.error(error, cause, getLogMap(documentMetadata));
+                        throw new RetryableException(error, cause);
+                    }
+                    return getLocationAsUri(response, uri, documentMetadata);
+                });
+    }
+
+    private URI getLocationAsUri(final HttpResponse<Void> response,
+                                 final String uri,
+                                 final String documentMetadata) {
+        if (response.statusCode() != FOUND.value()) {
+            final var error = "Received unexpected response status code " +
+                    response.statusCode() +
+                    " getting public URI using document content request " +
+                    uri + ".";
+            logger.error(error, getLogMap(documentMetadata));
+            throw new RetryableException(error);
+        }
+        final var location = response.headers().firstValue(LOCATION).orElse(null);
+        if (location == null || location.isEmpty()) {
+            // Should this happen (unlikely), it would likely not be a recoverable issue.
+            final var error = "No locations found in response from document API.";
+            logger.error(error, getLogMap(documentMetadata));
+            throw new NonRetryableException(error);
+        }
+        try {
+            final var publicUri = new URI(location);
+            logger.info("Got public URI " + publicUri + " for document metadata " + documentMetadata + ".",
+                    getLogMap(documentMetadata, publicUri));
+            return publicUri;
+        } catch (URISyntaxException ex) {
+            // Should this happen (unlikely), it would likely not be a recoverable issue.
+            final var error = "Invalid URI `" + location + "` obtained from Location header.";
+            logger.error(error, ex, getLogMap(documentMetadata));
+            throw new NonRetryableException(error, ex);
+        }
+    }
+
+    private static String getPath(final String documentMetadata) {
+        final var path = getDocumentMetadataPath(documentMetadata);
+        return path != null ? path : documentMetadata;
+    }
+
+    private Map<String, Object> getLogMap(final String documentMetadata) {
+        return new DataMap.Builder()
+                .filingHistoryDocumentMetadata(documentMetadata)
+                .build()
+                .getLogMap();
+    }
+
+    private Map<String, Object> getLogMap(final String documentMetadata, final URI publicUri) {
+        return new DataMap.Builder()
+                .filingHistoryDocumentMetadata(documentMetadata)
+                .documentPublicUri(publicUri.toString())
+                .build()
+                .getLogMap();
+    }
+
+    private Map<String, Object> getLogMap(final String documentMetadata, final URI publicUri, final URI privateUri) {
+        return new DataMap.Builder()
+                .filingHistoryDocumentMetadata(documentMetadata)
+                .documentPublicUri(publicUri.toString())
+                .documentPrivateUri(privateUri.toString())
+                .build()
+                .getLogMap();
+    }
+}
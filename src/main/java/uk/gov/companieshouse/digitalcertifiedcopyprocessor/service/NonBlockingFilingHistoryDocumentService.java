@@ -0,0 +1,177 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriTemplate;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.FilingHistoryDocumentNotFoundException;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.NonRetryableException;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.util.DataMap;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.UpstreamGuard.Upstream.FILING_HISTORY_API;
+
+/**
+ * The non-blocking counterpart of the {@link FilingHistoryDocumentService}, selected with
+ * <code>api_client.non_blocking</code>. The filing is requested with the asynchronous client provided by the
+ * {@link ApiClientService}, and its document metadata link read from the response once it arrives, so that no thread
+ * waits on the filing history API. Lookups share the {@link FilingHistoryDocumentCache cache}, and concurrent lookups
+ * of the same filing history document share a single request, guarded by the same {@link UpstreamGuard}, just as
+ * with the blocking service. Failures are reported with the same exceptions.
+ */
+@Service
+public class NonBlockingFilingHistoryDocumentService {
+
+    private static final UriTemplate
+            GET_FILING_HISTORY_DOCUMENT =
+            new UriTemplate("/company/{companyNumber}/filing-history/{filingHistoryId}");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final ApiClientService apiClientService;
+
+    private final Logger logger;
+
+    private final FilingHistoryDocumentCache cache;
+
+    private final UpstreamGuard upstreamGuard;
+
+    private final SingleFlight<String, String> lookups = new SingleFlight<>();
+
+    public NonBlockingFilingHistoryDocumentService(final ApiClientService apiClientService,
+                                                   final Logger logger,
+                                                   final FilingHistoryDocumentCache cache,
+                                                   final UpstreamGuard upstreamGuard) {
+        this.apiClientService = apiClientService;
+        this.logger = logger;
+        this.cache = cache;
+        this.upstreamGuard = upstreamGuard;
+    }
+
+    /**
+     * Gets the filing history document metadata for the company number and filing history document ID provided.
+     * @param companyNumber the company number
+     * @param filingHistoryDocumentId the filing history document ID
+     * @return the document metadata link, once available
+     */
+    public CompletableFuture<String> getDocumentMetadata(
+            final String companyNumber,
+            final String filingHistoryDocumentId) {
+        return cache.getAsync(companyNumber, filingHistoryDocumentId, () -> {
+            final String uri = GET_FILING_HISTORY_DOCUMENT.expand(companyNumber, filingHistoryDocumentId).toString();
+            return lookups.executeAsync(uri, () -> upstreamGuard.callAsync(FILING_HISTORY_API,
+                    () -> lookUpDocumentMetadata(companyNumber, filingHistoryDocumentId, uri)));
+        });
+    }
+
+    private CompletableFuture<String> lookUpDocumentMetadata(
+            final String companyNumber,
+            final String filingHistoryDocumentId,
+            final String uri) {
+        logger.info("Getting filing history document " + filingHistoryDocumentId + " for company number "
+                + companyNumber + ".", getLogMap(companyNumber, filingHistoryDocumentId));
+        final HttpRequest request;
+        try {
+            request = apiClientService.newAsyncRequest(FILING_HISTORY_API, uri)
+                    .header(ACCEPT, APPLICATION_JSON_VALUE)
+                    .GET()
+                    .build();
+        } catch (RuntimeException re) {
+            // Should this happen (unlikely), it would likely not be a recoverable issue.
+            final var error = "Caught RuntimeException getting API client: " + re.getMessage();
+            logger.error(error, getLogMap(companyNumber, filingHistoryDocumentId));
+            return CompletableFuture.failedFuture(new NonRetryableException(error, re));
+        }
+        return apiClientService.getAsyncHttpClient()
+                .sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .handle((response, ex) -> {
+                    if (ex != null) {
+                        final var cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                        final var error = "Error sending request to " + request.uri() + ": " + cause.getMessage();
+                        logger.error(error, getLogMap(companyNumber, filingHistoryDocumentId,
+                                HttpStatus.INTERNAL_SERVER_ERROR, error));
+                        throw new RetryableException(error, cause);
+                    }
+                    return getDocumentMetadata(response, companyNumber, filingHistoryDocumentId);
+                });
+    }
+
+    private String getDocumentMetadata(final HttpResponse<byte[]> response,
+                                       final String companyNumber,
+                                       final String filingHistoryDocumentId) {
+        final var status = HttpStatus.valueOf(response.statusCode());
+        if (!status.is2xxSuccessful()) {
+            final String error;
+            if (status.is5xxServerError()) {
+                error = "Error sending request to " + response.uri() + ": " + status.getReasonPhrase();
+            } else {
+                error = "Error getting filing history document " + filingHistoryDocumentId +
+                        " for company number " + companyNumber + ": " + status.value() + " "
+                        + status.getReasonPhrase() + "\n" + new String(response.body(), StandardCharsets.UTF_8);
+            }
+            logger.error(error, getLogMap(companyNumber, filingHistoryDocumentId, status, error));
+            if (FilingHistoryDocumentService.isNotFound(status)) {
+                throw new FilingHistoryDocumentNotFoundException(error);
+            }
+            throw new RetryableException(error);
+        }
+        try {
+            final var metadata = MAPPER.readTree(response.body())
+                    .path("links")
+                    .path("document_metadata")
+                    .asText(null);
+            logger.info("Got document metadata " + metadata + ".",
+                    getLogMap(companyNumber, filingHistoryDocumentId, metadata));
+            return metadata;
+        } catch (IOException ex) {
+            final var error = "Unable to read filing history document " + filingHistoryDocumentId +
+                    " for company number " + companyNumber + ": " + ex.getMessage();
+            logger.error(error, ex, getLogMap(companyNumber, filingHistoryDocumentId, status, error));
+            throw new RetryableException(error, ex);
+        }
+    }
+
+    private Map<String, Object> getLogMap(final String companyNumber, final String filingHistoryDocumentId) {
+        return new DataMap.Builder()
+                .companyNumber(companyNumber)
+                .filingHistoryDocumentId(filingHistoryDocumentId)
+                .build()
+                .getLogMap();
+    }
+
+    private Map<String, Object> getLogMap(final String companyNumber,
+                                          final String filingHistoryDocumentId,
+                                          final String metadata) {
+        return new DataMap.Builder()
+                .companyNumber(companyNumber)
+                .filingHistoryDocumentId(filingHistoryDocumentId)
+                .filingHistoryDocumentMetadata(metadata)
+                .build()
+                .getLogMap();
+    }
+
+    private Map<String, Object> getLogMap(final String companyNumber,
+                                          final String filingHistoryDocumentId,
+                                          final HttpStatus status,
+                                          final String error) {
+        return new DataMap.Builder()
+                .companyNumber(companyNumber)
+                .filingHistoryDocumentId(filingHistoryDocumentId)
+                .status(status.toString())
+                .errors(List.of(error))
+                .build()
+                .getLogMap();
+    }
+}
@@ -0,0 +1,40 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
+
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpTransport;
+import uk.gov.companieshouse.api.http.ApiKeyHttpClient;
+
+/**
+ * Authenticates requests with the API key just as {@link ApiKeyHttpClient} does, but sends them over the shared,
+ * pooled transport provided by the {@link ApiClientService}, with its connect timeout and the read timeout of the API
+ * called.
+ */
+class PooledApiKeyHttpClient extends ApiKeyHttpClient {
+
+    private final HttpTransport transport;
+    private final int connectTimeout;
+    private final int readTimeout;
+
+    PooledApiKeyHttpClient(final String apiKey,
+                           final HttpTransport transport,
+                           final int connectTimeout,
+                           final int readTimeout) {
+        super(apiKey);
+        this.transport = transport;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    @Override
+    public HttpRequestFactory getHttpRequestFactory() {
+        // The SDK's own request factory is used only for the authentication and headers it initialises requests with.
+        final var initializer = super.getHttpRequestFactory().getInitializer();
+        return transport.createRequestFactory(request -> {
+            if (initializer != null) {
+                initializer.initialize(request);
+            }
+            request.setConnectTimeout(connectTimeout);
+            request.setReadTimeout(readTimeout);
+        });
+    }
+}
@@ -0,0 +1,93 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Holds the private URI derived for each document, keyed by the path of its document metadata. Unlike the presigned
+ * public URI it is derived from, a private URI does not expire, so entries are held for the lifetime of the pod unless
+ * evicted to keep the cache within its maximum size. Caffeine's Window TinyLFU policy decides which entries are
+ * evicted, favouring the documents ordered most often.<br>
+ * <br>
+ * The hits, misses and evictions of the cache are published as the <code>cache.*</code> metrics tagged
+ * <code>cache=document-private-uri</code>.
+ */
+@Component
+public class PrivateUriCache {
+
+    static final String CACHE_NAME = "document-private-uri";
+
+    private final Cache<String, URI> cache;
+
+    public PrivateUriCache(@Value("${document.private_uri_cache.max_size:100000}") long maxSize,
+                           ObjectProvider<MeterRegistry> meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME));
+    }
+
+    /**
+     * Gets the private URI of the document, deriving it only if not already held. Nothing is held should the lookup
+     * fail.
+     * @param documentMetadataPath the path of the document metadata
+     * @param lookup derives the private URI
+     * @return the private URI
+     */
+    public URI get(final String documentMetadataPath, final Supplier<URI> lookup) {
+        if (documentMetadataPath == null) {
+            return lookup.get();
+        }
+        final var cached = cache.getIfPresent(documentMetadataPath);
+        if (cached != null) {
+            return cached;
+        }
+        // Looked up outside the cache, so that a slow lookup does not hold up lookups of other documents.
+        final var privateUri = lookup.get();
+        if (privateUri != null) {
+            cache.put(documentMetadataPath, privateUri);
+        }
+        return privateUri;
+    }
+
+    /**
+     * Gets the private URI of the document, deriving it asynchronously only if not already held. Nothing is held
+     * should the lookup fail.
+     * @param documentMetadataPath the path of the document metadata
+     * @param lookup starts deriving the private URI
+     * @return the private URI, once available
+     */
+    public CompletableFuture<URI> getAsync(final String documentMetadataPath,
+                                           final Supplier<CompletableFuture<URI>> lookup) {
+        if (documentMetadataPath == null) {
+            return lookup.get();
+        }
+        final var cached = cache.getIfPresent(documentMetadataPath);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return lookup.get().thenApply(privateUri -> {
+            if (privateUri != null) {
+                cache.put(documentMetadataPath, privateUri);
+            }
+            return privateUri;
+        });
+    }
+
+    /**
+     * Discards every entry held.
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,89 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key into a single call. The first thread to ask for a key makes the call,
+ * and any other thread asking for the same key while it is in flight waits for and receives its result, or has its
+ * exception thrown. Once the call completes, the next thread to ask for the key makes the call afresh.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the results
+ */
+final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Makes the call for the key, unless a call for the same key is already in flight, in which case its outcome is
+     * shared instead.
+     * @param key the key identifying the call
+     * @param call the call
+     * @return the result of the call
+     */
+    V execute(final K key, final Supplier<V> call) {
+        final var flight = new CompletableFuture<V>();
+        final var inFlight = flights.putIfAbsent(key, flight);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+        try {
+            final var result = call.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error ex) {
+            flight.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * Starts the asynchronous call for the key, unless a call for the same key is already in flight, in which case its
+     * outcome is shared instead. No thread waits on the call.
+     * @param key the key identifying the call
+     * @param call starts the call
+     * @return the result of the call, once complete
+     */
+    CompletableFuture<V> executeAsync(final K key, final Supplier<CompletableFuture<V>> call) {
+        final var flight = new CompletableFuture<V>();
+        final var inFlight = flights.putIfAbsent(key, flight);
+        if (inFlight != null) {
+            // A copy, so that a caller cancelling its own future does not cancel the call for every caller.
+            return inFlight.copy();
+        }
+        try {
+            call.get().whenComplete((result, ex) -> {
+                flights.remove(key, flight);
+                if (ex != null) {
+                    flight.completeExceptionally(ex instanceof CompletionException ? ex.getCause() : ex);
+                } else {
+                    flight.complete(result);
+                }
+            });
+        } catch (RuntimeException | Error ex) {
+            flights.remove(key, flight);
+            flight.completeExceptionally(ex);
+        }
+        return flight.copy();
+    }
+
+    private static <V> V await(final CompletableFuture<V> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException ex) {
+            // The exception the call threw is rethrown as is, to be handled just as it would have been by its caller.
+            if (ex.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (ex.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedRateLimiterMetrics;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterConfig;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.UpstreamUnavailableException;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import static io.github.resilience4j.circuitbreaker.CircuitBreakerConfig.SlidingWindowType.COUNT_BASED;
+
+/**
+ * Guards the calls made to each upstream API with a circuit breaker, a bulkhead and optionally a rate limiter of its
+ * own, so that one API degrading neither holds up the calls made to the other, nor is hammered while it recovers.<br>
+ * <br>
+ * The circuit breaker of an API opens once <code>upstream.circuit_breaker.failure_rate_threshold</code> percent of the
+ * last <code>upstream.circuit_breaker.sliding_window_size</code> calls to it have failed with a
+ * {@link RetryableException}. While open, no calls are made to the API. After
+ * <code>upstream.circuit_breaker.open_ms</code> it lets a few trial calls through, closing again should enough of them
+ * succeed. The bulkhead of an API caps the calls in flight to it at
+ * <code>upstream.bulkhead.max_concurrent_calls</code>, with any further blocking call waiting up to
+ * <code>upstream.bulkhead.max_wait_ms</code> for one of them to complete, and any further asynchronous call refused
+ * straight away, so that no thread is parked on its behalf. With
+ * <code>upstream.rate_limiter.limit_per_second</code>, the rate limiter of an API, shared by every listener thread,
+ * paces the calls made to it evenly at that rate, each call waiting its turn for up to
+ * <code>upstream.rate_limiter.max_wait_ms</code>, so that catching up on a backlog does not exceed the quota of the
+ * API gateway. A call refused by any of them is not attempted, and an {@link UpstreamUnavailableException} thrown
+ * instead.<br>
+ * <br>
+ * The state of each circuit breaker, bulkhead and rate limiter is published as the
+ * <code>resilience4j.circuitbreaker.*</code>, <code>resilience4j.bulkhead.*</code> and
+ * <code>resilience4j.ratelimiter.*</code> metrics tagged with the name of the API.
+ */
+@Component
+public class UpstreamGuard {
+
+    /**
+     * The upstream APIs called.
+     */
+    public enum Upstream {
+
+        FILING_HISTORY_API("filing-history-api"),
+        DOCUMENT_API("document-api");
+
+        private final String apiName;
+
+        Upstream(final String apiName) {
+            this.apiName = apiName;
+        }
+
+        public String getApiName() {
+            return apiName;
+        }
+    }
+
+    private final Map<Upstream, CircuitBreaker> circuitBreakers = new EnumMap<>(Upstream.class);
+
+    private final Map<Upstream, Bulkhead> bulkheads = new EnumMap<>(Upstream.class);
+
+    private final Map<Upstream, RateLimiter> rateLimiters = new EnumMap<>(Upstream.class);
+
+    /** Signalled whenever a call to the API completes, for any blocking call waiting on its bulkhead. */
+    private final Map<Upstream, Condition> bulkheadReleases = new EnumMap<>(Upstream.class);
+
+    private final Lock bulkheadLock = new ReentrantLock();
+
+    private final long bulkheadMaxWaitNanos;
+
+    public UpstreamGuard(@Value("${upstream.circuit_breaker.failure_rate_threshold:50}") float failureRateThreshold,
+                         @Value("${upstream.circuit_breaker.sliding_window_size:20}") int slidingWindowSize,
+                         @Value("${upstream.circuit_breaker.open_ms:30000}") long openMillis,
+                         @Value("${upstream.bulkhead.max_concurrent_calls:20}") int maxConcurrentCalls,
+                         @Value("${upstream.bulkhead.max_wait_ms:10000}") long maxWaitMillis,
+                         @Value("${upstream.rate_limiter.limit_per_second:0}") int limitPerSecond,
+                         @Value("${upstream.rate_limiter.max_wait_ms:5000}") long rateLimiterMaxWaitMillis,
+                         ObjectProvider<MeterRegistry> meterRegistry) {
+        final var circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slidingWindowType(COUNT_BASED)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(slidingWindowSize)
+                .waitDurationInOpenState(Duration.ofMillis(openMillis))
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                // Only failures that may be down to the API itself count against it.
+                .recordException(RetryableException.class::isInstance)
+                .build());
+        final var bulkheadRegistry = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                // Never waits, as blocking calls wait for a place themselves, and asynchronous calls must not wait.
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+        this.bulkheadMaxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        final var rateLimiterRegistry = RateLimiterRegistry.of(RateLimiterConfig.custom()
+                // A single permit per interval spreads the calls out evenly, rather than letting through bursts.
+                .limitForPeriod(1)
+                .limitRefreshPeriod(Duration.ofNanos(TimeUnit.SECONDS.toNanos(1) / Math.max(limitPerSecond, 1)))
+                .timeoutDuration(Duration.ofMillis(rateLimiterMaxWaitMillis))
+                .build());
+        for (final var upstream : Upstream.values()) {
+            circuitBreakers.put(upstream, circuitBreakerRegistry.circuitBreaker(upstream.getApiName()));
+            bulkheads.put(upstream, bulkheadRegistry.bulkhead(upstream.getApiName()));
+            bulkheadReleases.put(upstream, bulkheadLock.newCondition());
+            if (limitPerSecond > 0) {
+                rateLimiters.put(upstream, rateLimiterRegistry.rateLimiter(upstream.getApiName()));
+            }
+        }
+        meterRegistry.ifAvailable(registry -> {
+            TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(registry);
+            TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(registry);
+            TaggedRateLimiterMetrics.ofRateLimiterRegistry(rateLimiterRegistry).bindTo(registry);
+        });
+    }
+
+    /**
+     * Makes the call to the upstream API once its rate limiter permits it, should its circuit breaker and bulkhead
+     * permit it.
+     * @param upstream the API called
+     * @param call the call
+     * @return the result of the call
+     * @throws UpstreamUnavailableException should the call not be permitted
+     */
+    public <T> T call(final Upstream upstream, final Supplier<T> call) {
+        final var rateLimiter = rateLimiters.get(upstream);
+        if (rateLimiter != null && !rateLimiter.acquirePermission()) {
+            throw rateLimited(upstream);
+        }
+        final var circuitBreaker = circuitBreakers.get(upstream);
+        final var bulkhead = bulkheads.get(upstream);
+        acquirePermission(upstream, circuitBreaker, bulkhead);
+        final long start = circuitBreaker.getCurrentTimestamp();
+        try {
+            final var result = call.get();
+            circuitBreaker.onSuccess(circuitBreaker.getCurrentTimestamp() - start, circuitBreaker.getTimestampUnit());
+            return result;
+        } catch (RuntimeException ex) {
+            if (Thread.currentThread().isInterrupted()) {
+                // Given up on by the caller, say as a hedged call answered first, so not the API's failure.
+                circuitBreaker.releasePermission();
+            } else {
+                circuitBreaker.onError(circuitBreaker.getCurrentTimestamp() - start, circuitBreaker.getTimestampUnit(),
+                        ex);
+            }
+            throw ex;
+        } finally {
+            releaseBulkhead(upstream, bulkhead);
+        }
+    }
+
+    /**
+     * Starts the asynchronous call to the upstream API once its rate limiter permits it, should its circuit breaker
+     * and bulkhead permit it. No thread waits on the rate limiter, the call being started after the wait instead, nor
+     * on the bulkhead, the call being refused should it be full. The call holds its place in the bulkhead until it
+     * completes.
+     * @param upstream the API called
+     * @param call starts the call
+     * @return the result of the call, once complete, or an {@link UpstreamUnavailableException} should the call not be
+     * permitted
+     */
+    public <T> CompletableFuture<T> callAsync(final Upstream upstream, final Supplier<CompletableFuture<T>> call) {
+        final var rateLimiter = rateLimiters.get(upstream);
+        if (rateLimiter == null) {
+            return callPermittedAsync(upstream, call);
+        }
+        final long waitNanos = rateLimiter.reservePermission();
+        if (waitNanos < 0) {
+            return CompletableFuture.failedFuture(rateLimited(upstream));
+        } else if (waitNanos == 0) {
+            return callPermittedAsync(upstream, call);
+        }
+        return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS))
+                .thenCompose(ignored -> callPermittedAsync(upstream, call));
+    }
+
+    /**
+     * @return the circuit breaker of each upstream API
+     */
+    public Map<Upstream, CircuitBreaker> getCircuitBreakers() {
+        return Collections.unmodifiableMap(circuitBreakers);
+    }
+
+    /**
+     * @return the bulkhead of each upstream API
+     */
+    public Map<Upstream, Bulkhead> getBulkheads() {
+        return Collections.unmodifiableMap(bulkheads);
+    }
+
+    /**
+     * @return the rate limiter of each upstream API, or none should calls not be rate limited
+     */
+    public Map<Upstream, RateLimiter> getRateLimiters() {
+        return Collections.unmodifiableMap(rateLimiters);
+    }
+
+    private <T> CompletableFuture<T> callPermittedAsync(final Upstream upstream,
+                                                        final Supplier<CompletableFuture<T>> call) {
+        final var circuitBreaker = circuitBreakers.get(upstream);
+        final var bulkhead = bulkheads.get(upstream);
+        if (!bulkhead.tryAcquirePermission()) {
+            return CompletableFuture.failedFuture(
+                    bulkheadFull(upstream, BulkheadFullException.createBulkheadFullException(bulkhead)));
+        }
+        try {
+            acquireCircuitBreakerPermission(upstream, circuitBreaker, bulkhead);
+        } catch (UpstreamUnavailableException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        final long start = circuitBreaker.getCurrentTimestamp();
+        final CompletableFuture<T> outcome;
+        try {
+            outcome = call.get();
+        } catch (RuntimeException ex) {
+            circuitBreaker.onError(circuitBreaker.getCurrentTimestamp() - start, circuitBreaker.getTimestampUnit(), ex);
+            releaseBulkhead(upstream, bulkhead);
+            return CompletableFuture.failedFuture(ex);
+        }
+        return outcome.whenComplete((result, ex) -> {
+            final long duration = circuitBreaker.getCurrentTimestamp() - start;
+            if (ex == null) {
+                circuitBreaker.onSuccess(duration, circuitBreaker.getTimestampUnit());
+            } else {
+                circuitBreaker.onError(duration, circuitBreaker.getTimestampUnit(),
+                        ex instanceof CompletionException ? ex.getCause() : ex);
+            }
+            releaseBulkhead(upstream, bulkhead);
+        });
+    }
+
+    private static UpstreamUnavailableException bulkheadFull(final Upstream upstream, final BulkheadFullException ex) {
+        return new UpstreamUnavailableException("Too many calls to the " + upstream.getApiName()
+                + " in flight, not calling it.", ex);
+    }
+
+    private static UpstreamUnavailableException rateLimited(final Upstream upstream) {
+        return new UpstreamUnavailableException("Rate limit of the " + upstream.getApiName()
+                + " reached, not calling it.");
+    }
+
+    private void acquirePermission(final Upstream upstream,
+                                   final CircuitBreaker circuitBreaker,
+                                   final Bulkhead bulkhead) {
+        if (!bulkhead.tryAcquirePermission()) {
+            awaitBulkhead(upstream, bulkhead);
+        }
+        acquireCircuitBreakerPermission(upstream, circuitBreaker, bulkhead);
+    }
+
+    /**
+     * Waits up to <code>upstream.bulkhead.max_wait_ms</code> for a place in the full bulkhead of the API.
+     */
+    private void awaitBulkhead(final Upstream upstream, final Bulkhead bulkhead) {
+        final long deadline = System.nanoTime() + bulkheadMaxWaitNanos;
+        final var released = bulkheadReleases.get(upstream);
+        bulkheadLock.lock();
+        try {
+            // Only tried once a place may be free, so as not to count a rejection for each wait.
+            while (bulkhead.getMetrics().getAvailableConcurrentCalls() == 0 || !bulkhead.tryAcquirePermission()) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw bulkheadFull(upstream, BulkheadFullException.createBulkheadFullException(bulkhead));
+                }
+                released.awaitNanos(remaining);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw bulkheadFull(upstream, BulkheadFullException.createBulkheadFullException(bulkhead));
+        } finally {
+            bulkheadLock.unlock();
+        }
+    }
+
+    private void releaseBulkhead(final Upstream upstream, final Bulkhead bulkhead) {
+        bulkhead.onComplete();
+        bulkheadLock.lock();
+        try {
+            bulkheadReleases.get(upstream).signal();
+        } finally {
+            bulkheadLock.unlock();
+        }
+    }
+
+    private void acquireCircuitBreakerPermission(final Upstream upstream,
+                                                        final CircuitBreaker circuitBreaker,
+                                                        final Bulkhead bulkhead) {
+        try {
+            circuitBreaker.acquirePermission();
+        } catch (CallNotPermittedException ex) {
+            releaseBulkhead(upstream, bulkhead);
+            throw new UpstreamUnavailableException("Circuit breaker for the " + upstream.getApiName()
+                    + " is " + circuitBreaker.getState() + ", not calling it.", ex);
+        }
+    }
+}
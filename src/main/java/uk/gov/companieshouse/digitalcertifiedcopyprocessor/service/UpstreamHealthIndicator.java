@@ -0,0 +1,47 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reports the state of the circuit breaker, bulkhead and any rate limiter guarding each upstream API on the
+ * <code>healthcheck</code> endpoint, under <code>upstream</code>. The status reported is always UP: an open circuit
+ * breaker means an upstream API is unavailable, not that this service is, and restarting the service would not help
+ * it recover.
+ */
+@Component
+public class UpstreamHealthIndicator implements HealthIndicator {
+
+    private final UpstreamGuard upstreamGuard;
+
+    public UpstreamHealthIndicator(UpstreamGuard upstreamGuard) {
+        this.upstreamGuard = upstreamGuard;
+    }
+
+    @Override
+    public Health health() {
+        final var health = Health.up();
+        upstreamGuard.getCircuitBreakers().forEach((upstream, circuitBreaker) -> {
+            final var metrics = circuitBreaker.getMetrics();
+            final var bulkhead = upstreamGuard.getBulkheads().get(upstream).getMetrics();
+            final Map<String, Object> details = new HashMap<>(Map.of(
+                    "circuitBreakerState", circuitBreaker.getState().name(),
+                    "failureRate", metrics.getFailureRate(),
+                    "bufferedCalls", metrics.getNumberOfBufferedCalls(),
+                    "notPermittedCalls", metrics.getNumberOfNotPermittedCalls(),
+                    "availableConcurrentCalls", bulkhead.getAvailableConcurrentCalls(),
+                    "maxConcurrentCalls", bulkhead.getMaxAllowedConcurrentCalls()));
+            final var rateLimiter = upstreamGuard.getRateLimiters().get(upstream);
+            if (rateLimiter != null) {
+                details.put("availableRatePermissions", rateLimiter.getMetrics().getAvailablePermissions());
+                details.put("callsWaitingForRatePermission", rateLimiter.getMetrics().getNumberOfWaitingThreads());
+            }
+            health.withDetail(upstream.getApiName(), details);
+        });
+        return health.build();
+    }
+}
@@ -0,0 +1,116 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.config;
+
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka.SignDigitalDocumentFactory;
+import uk.gov.companieshouse.documentsigning.SignDigitalDocument;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.CERTIFIED_COPY;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.PRIVATE_DOCUMENT_URI;
+
+/**
+ * "Test" class re-purposed to compare the throughput, acknowledgement latency and broker request count of a number
+ * of <code>sign-digital-document</code> producer profiles (<code>kafka.producer.*</code>), by sending the same
+ * messages to an embedded broker with the producer built by {@link KafkaConfig#signProducerFactory} under each of
+ * them. This is NOT to be run as part of an automated test suite. It is for manual testing only.
+ */
+@Tag("manual")
+@EmbeddedKafka(topics = SignProducerProfileBenchmark.TOPIC)
+@SuppressWarnings("squid:S3577") // This is NOT to be run as part of an automated test suite.
+class SignProducerProfileBenchmark {
+
+    static final String TOPIC = "sign-producer-profile-benchmark";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("SignProducerProfileBenchmark");
+
+    private static final int WARM_UP_MESSAGES = 2_000;
+    private static final int MESSAGES = 20_000;
+
+    private static final List<Profile> PROFILES = List.of(
+            new Profile("client defaults", 0, 16_384, "none"),
+            new Profile("linger 5ms", 5, 16_384, "none"),
+            new Profile("linger 5ms, 64KB batches", 5, 65_536, "none"),
+            new Profile("linger 5ms, 64KB batches, lz4", 5, 65_536, "lz4"),
+            new Profile("linger 5ms, 64KB batches, zstd", 5, 65_536, "zstd"),
+            new Profile("linger 20ms, 128KB batches, lz4", 20, 131_072, "lz4"));
+
+    @SuppressWarnings("squid:S2699") // at least one assertion
+    @Test
+    void compareProducerProfiles(final EmbeddedKafkaBroker broker) {
+        final var message = new SignDigitalDocumentFactory().buildMessage(CERTIFIED_COPY, PRIVATE_DOCUMENT_URI,
+                "Appointment of Mr Tom Smith as a director on 1 December 2023");
+        for (final var profile : PROFILES) {
+            final var factory = new KafkaConfig().signProducerFactory(broker.getBrokersAsString(), false, "",
+                    profile.lingerMillis(), profile.batchSize(), profile.compressionType(), 5, true, "all");
+            final var template = new KafkaTemplate<>(factory);
+            try {
+                send(template, message, WARM_UP_MESSAGES);
+                final var requestsBefore = requestTotal(template.metrics());
+                final var start = System.nanoTime();
+                final var latencies = send(template, message, MESSAGES);
+                final var elapsedNanos = System.nanoTime() - start;
+                final var requests = requestTotal(template.metrics()) - requestsBefore;
+                Arrays.sort(latencies);
+                LOGGER.info("Profile " + profile.name() + ": "
+                        + MESSAGES * TimeUnit.SECONDS.toNanos(1) / elapsedNanos + " messages/s, ack latency p50 "
+                        + micros(percentile(latencies, 50)) + "us, p99 " + micros(percentile(latencies, 99))
+                        + "us, max " + micros(latencies[latencies.length - 1]) + "us, " + Math.round(requests)
+                        + " produce requests.");
+            } finally {
+                template.destroy();
+                factory.reset();
+            }
+        }
+    }
+
+    /**
+     * Sends the message the number of times given without waiting between sends, so that the producer is free to
+     * batch them, and returns the time in nanoseconds each of them took to be acknowledged.
+     */
+    private static long[] send(final KafkaTemplate<String, SignDigitalDocument> template,
+                               final SignDigitalDocument message,
+                               final int count) {
+        final var latencies = new long[count];
+        final var acknowledgements = new CompletableFuture<?>[count];
+        for (int index = 0; index < count; index++) {
+            final var sent = index;
+            final var start = System.nanoTime();
+            acknowledgements[index] = template.send(TOPIC, "ORD-" + index, message)
+                    .whenComplete((result, throwable) -> latencies[sent] = System.nanoTime() - start);
+        }
+        CompletableFuture.allOf(acknowledgements).join();
+        return latencies;
+    }
+
+    private static double requestTotal(final Map<MetricName, ? extends Metric> metrics) {
+        return metrics.entrySet().stream()
+                .filter(metric -> metric.getKey().group().equals("producer-metrics")
+                        && metric.getKey().name().equals("request-total"))
+                .mapToDouble(metric -> (double) metric.getValue().metricValue())
+                .sum();
+    }
+
+    private static long percentile(final long[] sorted, final int percentile) {
+        return sorted[Math.max(0, (int) Math.ceil(percentile / 100.0 * sorted.length) - 1)];
+    }
+
+    private static long micros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private record Profile(String name, int lingerMillis, int batchSize, String compressionType) {
+    }
+}
@@ -0,0 +1,392 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.NonRetryableException;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.UpstreamUnavailableException;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.KafkaService;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.KafkaServiceParameters;
+import uk.gov.companieshouse.itemorderedcertifiedcopy.ItemOrderedCertifiedCopy;
+import uk.gov.companieshouse.logging.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka.ItemOrderedCertifiedCopyAvroDeserializer.ORIGINAL_VALUE_HEADER;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.CERTIFIED_COPY;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.CERTIFIED_COPY_2;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.TestUtils.undeserialisableRecord;
+
+/**
+ * Unit tests the {@link BatchConsumer} class.
+ */
+@ExtendWith(MockitoExtension.class)
+class BatchConsumerTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("echo", 0);
+
+    @Mock
+    private KafkaService service;
+
+    @Mock
+    private KafkaTemplate<String, ItemOrderedCertifiedCopy> kafkaTemplate;
+
+    @Mock
+    private KafkaTemplate<String, byte[]> rawKafkaTemplate;
+
+    @Mock
+    private KafkaTemplate<String, Object> transactionalOutputKafkaTemplate;
+
+    @Mock
+    private KafkaListenerEndpointRegistry registry;
+
+    @Mock
+    private Logger logger;
+
+    @Mock
+    private org.apache.kafka.clients.consumer.Consumer<?, ?> kafkaConsumer;
+
+    private BatchConsumer consumerUnderTest;
+
+    @BeforeEach
+    void setUp() {
+        consumerUnderTest = new BatchConsumer(service, kafkaTemplate, rawKafkaTemplate,
+                transactionalOutputKafkaTemplate, new OffsetTracker(),
+                registry, logger, "echo-consumer", "echo", "echo-invalid", 100L, false);
+    }
+
+    @Test
+    @DisplayName("consume() processes every record in the batch")
+    void consumeProcessesEveryRecord() {
+
+        // Given
+        when(service.processMessageAsync(any(KafkaServiceParameters.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        consumerUnderTest.consume(List.of(record(0L, CERTIFIED_COPY), record(1L, CERTIFIED_COPY_2)), kafkaConsumer);
+
+        // Then
+        verify(service).processMessageAsync(new KafkaServiceParameters(CERTIFIED_COPY));
+        verify(service).processMessageAsync(new KafkaServiceParameters(CERTIFIED_COPY_2));
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+        verify(kafkaConsumer).commitSync(Map.of(PARTITION, new OffsetAndMetadata(2L)));
+        verify(kafkaConsumer, never()).seek(any(TopicPartition.class), anyLong());
+    }
+
+    @Test
+    @DisplayName("consume() republishes a record failing retryably to the retry topic")
+    void consumeRepublishesRetryableFailureToRetryTopic() {
+
+        // Given
+        when(service.processMessageAsync(any(KafkaServiceParameters.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(service.processMessageAsync(new KafkaServiceParameters(CERTIFIED_COPY)))
+                .thenReturn(CompletableFuture.failedFuture(new RetryableException("Test exception")));
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        consumerUnderTest.consume(List.of(record(0L, CERTIFIED_COPY), record(1L, CERTIFIED_COPY_2)), kafkaConsumer);
+
+        // Then
+        final ArgumentCaptor<ProducerRecord<String, ItemOrderedCertifiedCopy>> republished =
+                ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(republished.capture());
+        assertThat(republished.getValue().topic(), is("echo-retry"));
+        assertThat(republished.getValue().value(), is(CERTIFIED_COPY));
+        assertThat(classificationOf(republished.getValue()), is("RETRYABLE"));
+        verify(service).processMessageAsync(new KafkaServiceParameters(CERTIFIED_COPY_2));
+    }
+
+    @Test
+    @DisplayName("consume() republishes a record failing non-retryably to the invalid message topic")
+    void consumeRepublishesNonRetryableFailureToInvalidTopic() {
+
+        // Given
+        when(service.processMessageAsync(any(KafkaServiceParameters.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(service.processMessageAsync(new KafkaServiceParameters(CERTIFIED_COPY_2)))
+                .thenReturn(CompletableFuture.failedFuture(new NonRetryableException("Test exception")));
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        consumerUnderTest.consume(List.of(record(0L, CERTIFIED_COPY), record(1L, CERTIFIED_COPY_2)), kafkaConsumer);
+
+        // Then
+        final ArgumentCaptor<ProducerRecord<String, ItemOrderedCertifiedCopy>> republished =
+                ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(republished.capture());
+        assertThat(republished.getValue().topic(), is("echo-invalid"));
+        assertThat(republished.getValue().key(), is("key"));
+        assertThat(republished.getValue().value(), is(CERTIFIED_COPY_2));
+        assertThat(classificationOf(republished.getValue()), is("NON_RETRYABLE"));
+        verify(kafkaConsumer).commitSync(Map.of(PARTITION, new OffsetAndMetadata(2L)));
+    }
+
+    @Test
+    @DisplayName("consume() republishes a failed record with its original headers and value bytes")
+    void consumeRepublishesOriginalHeadersAndValue() {
+
+        // Given
+        final var originalValue = "original value".getBytes(StandardCharsets.UTF_8);
+        final var consumed = record(0L, CERTIFIED_COPY);
+        consumed.headers().add("trace_id", "1234".getBytes(StandardCharsets.UTF_8));
+        consumed.headers().add(ORIGINAL_VALUE_HEADER, originalValue);
+        when(service.processMessageAsync(any(KafkaServiceParameters.class)))
+                .thenReturn(CompletableFuture.failedFuture(new RetryableException("Test exception")));
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        consumerUnderTest.consume(List.of(consumed), kafkaConsumer);
+
+        // Then
+        final ArgumentCaptor<ProducerRecord<String, ItemOrderedCertifiedCopy>> republished =
+                ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(republished.capture());
+        assertThat(republished.getValue().headers().lastHeader("trace_id").value(),
+                is("1234".getBytes(StandardCharsets.UTF_8)));
+        assertThat(republished.getValue().headers().lastHeader(ORIGINAL_VALUE_HEADER).value(),
+                is(sameInstance(originalValue)));
+        assertThat(classificationOf(republished.getValue()), is("RETRYABLE"));
+    }
+
+    @Test
+    @DisplayName("consume() republishes an undeserialisable record to the invalid message topic as consumed")
+    void consumeRepublishesUndeserialisableRecordAsConsumed() {
+
+        // Given
+        final var data = "not an avro message".getBytes(StandardCharsets.UTF_8);
+        when(service.processMessageAsync(any(KafkaServiceParameters.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(rawKafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        consumerUnderTest.consume(List.of(undeserialisableRecord("echo", 0L, data), record(1L, CERTIFIED_COPY)),
+                kafkaConsumer);
+
+        // Then
+        final ArgumentCaptor<ProducerRecord<String, byte[]>> republished = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(rawKafkaTemplate).send(republished.capture());
+        assertThat(republished.getValue().topic(), is("echo-invalid"));
+        assertThat(republished.getValue().key(), is("key"));
+        assertThat(republished.getValue().value(), is(data));
+        assertThat(classificationOf(republished.getValue()), is("NON_RETRYABLE"));
+        assertThat(republished.getValue().headers().lastHeader(DeserializationFailures.HEADER), is(notNullValue()));
+        assertThat(republished.getValue().headers()
+                .lastHeader(SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER), is(nullValue()));
+        verify(service).processMessageAsync(any(KafkaServiceParameters.class));
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+        verify(kafkaConsumer).commitSync(Map.of(PARTITION, new OffsetAndMetadata(2L)));
+    }
+
+    @Test
+    @DisplayName("consume() commits only up to a record that could not be republished and rewinds to it")
+    void consumeRewindsToRecordThatCouldNotBeRepublished() {
+
+        // Given
+        when(service.processMessageAsync(any(KafkaServiceParameters.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(service.processMessageAsync(new KafkaServiceParameters(CERTIFIED_COPY_2)))
+                .thenReturn(CompletableFuture.failedFuture(new RetryableException("Test exception")));
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker unavailable")));
+
+        // When
+        consumerUnderTest.consume(List.of(record(0L, CERTIFIED_COPY), record(1L, CERTIFIED_COPY_2),
+                record(2L, CERTIFIED_COPY)), kafkaConsumer);
+
+        // Then
+        verify(kafkaConsumer).commitSync(Map.of(PARTITION, new OffsetAndMetadata(1L)));
+        verify(kafkaConsumer).seek(PARTITION, 1L);
+    }
+
+    @Test
+    @DisplayName("consume() rewinds to a record failing as an upstream API is unavailable rather than retrying it")
+    void consumeRewindsToRecordFailingAsUpstreamUnavailable() {
+
+        // Given
+        when(service.processMessageAsync(any(KafkaServiceParameters.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(service.processMessageAsync(new KafkaServiceParameters(CERTIFIED_COPY_2)))
+                .thenReturn(CompletableFuture.failedFuture(new UpstreamUnavailableException("Test exception",
+                        new IllegalStateException("Circuit breaker open"))));
+
+        // When
+        consumerUnderTest.consume(List.of(record(0L, CERTIFIED_COPY), record(1L, CERTIFIED_COPY_2),
+                record(2L, CERTIFIED_COPY)), kafkaConsumer);
+
+        // Then
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+        verify(kafkaConsumer).commitSync(Map.of(PARTITION, new OffsetAndMetadata(1L)));
+        verify(kafkaConsumer).seek(PARTITION, 1L);
+    }
+
+    @Test
+    @DisplayName("consume() holds back the records after one failing as an upstream API is unavailable for its key")
+    void consumeHoldsBackKeyOfRecordFailingAsUpstreamUnavailable() {
+
+        // Given
+        when(service.processMessageAsync(new KafkaServiceParameters(CERTIFIED_COPY_2)))
+                .thenReturn(CompletableFuture.failedFuture(new UpstreamUnavailableException("Test exception",
+                        new IllegalStateException("Circuit breaker open"))));
+
+        // When
+        consumerUnderTest.consume(List.of(record(0L, CERTIFIED_COPY_2), record(1L, CERTIFIED_COPY)), kafkaConsumer);
+
+        // Then
+        verify(service, never()).processMessageAsync(new KafkaServiceParameters(CERTIFIED_COPY));
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+        verify(kafkaConsumer, never()).commitSync(anyMap());
+        verify(kafkaConsumer).seek(PARTITION, 0L);
+    }
+
+    @Test
+    @DisplayName("consume() does not reprocess records completed before the batch was rewound")
+    void consumeSkipsRecordsAlreadyCompleted() {
+
+        // Given
+        when(service.processMessageAsync(any(KafkaServiceParameters.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(service.processMessageAsync(new KafkaServiceParameters(CERTIFIED_COPY_2)))
+                .thenReturn(CompletableFuture.failedFuture(new RetryableException("Test exception")));
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker unavailable")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        consumerUnderTest.consume(List.of(record(0L, CERTIFIED_COPY), record(1L, CERTIFIED_COPY_2),
+                record(2L, CERTIFIED_COPY)), kafkaConsumer);
+
+        // When
+        consumerUnderTest.consume(List.of(record(1L, CERTIFIED_COPY_2), record(2L, CERTIFIED_COPY)), kafkaConsumer);
+
+        // Then
+        verify(service, times(2)).processMessageAsync(new KafkaServiceParameters(CERTIFIED_COPY));
+        verify(service, times(2)).processMessageAsync(new KafkaServiceParameters(CERTIFIED_COPY_2));
+        verify(kafkaConsumer).commitSync(Map.of(PARTITION, new OffsetAndMetadata(3L)));
+    }
+
+    @Test
+    @DisplayName("consume() sends on the listener thread and leaves the offsets to the container in transactional mode")
+    void consumeInTransactionSendsOnListenerThread() {
+
+        // Given
+        consumerUnderTest = new BatchConsumer(service, kafkaTemplate, rawKafkaTemplate,
+                transactionalOutputKafkaTemplate, new OffsetTracker(),
+                registry, logger, "echo-consumer", "echo", "echo-invalid", 100L, true);
+        final var listenerThread = Thread.currentThread();
+        final List<Thread> sendThreads = new CopyOnWriteArrayList<>();
+        when(service.processMessageAsync(any(KafkaServiceParameters.class), any(Executor.class)))
+                .thenAnswer(invocation -> CompletableFuture.runAsync(
+                        () -> sendThreads.add(Thread.currentThread()), invocation.getArgument(1)));
+
+        // When
+        consumerUnderTest.consume(List.of(record(0L, CERTIFIED_COPY), record(1L, CERTIFIED_COPY_2)), kafkaConsumer);
+
+        // Then
+        assertThat(sendThreads, contains(listenerThread, listenerThread));
+        verify(kafkaConsumer, never()).commitSync(anyMap());
+        verify(kafkaConsumer, never()).seek(any(TopicPartition.class), anyLong());
+    }
+
+    @Test
+    @DisplayName("consume() rolls back the transaction when a failed record could not be republished")
+    void consumeInTransactionRollsBackWhenRepublishFails() {
+
+        // Given
+        consumerUnderTest = new BatchConsumer(service, kafkaTemplate, rawKafkaTemplate,
+                transactionalOutputKafkaTemplate, new OffsetTracker(),
+                registry, logger, "echo-consumer", "echo", "echo-invalid", 100L, true);
+        when(service.processMessageAsync(any(KafkaServiceParameters.class), any(Executor.class)))
+                .thenReturn(CompletableFuture.failedFuture(new RetryableException("Test exception")));
+        when(transactionalOutputKafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker unavailable")));
+        final var records = List.of(record(0L, CERTIFIED_COPY));
+
+        // When and Then
+        assertThrows(RetryableException.class, () -> consumerUnderTest.consume(records, kafkaConsumer));
+    }
+
+    @Test
+    @DisplayName("consume() republishes through the producer of the transaction in transactional mode")
+    void consumeInTransactionRepublishesThroughTransactionalProducer() {
+
+        // Given
+        consumerUnderTest = new BatchConsumer(service, kafkaTemplate, rawKafkaTemplate,
+                transactionalOutputKafkaTemplate, new OffsetTracker(),
+                registry, logger, "echo-consumer", "echo", "echo-invalid", 100L, true);
+        when(service.processMessageAsync(any(KafkaServiceParameters.class), any(Executor.class)))
+                .thenReturn(CompletableFuture.failedFuture(new RetryableException("Test exception")));
+        when(transactionalOutputKafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        final ArgumentCaptor<ProducerRecord<String, Object>> republished =
+                ArgumentCaptor.forClass(ProducerRecord.class);
+
+        // When
+        consumerUnderTest.consume(List.of(record(0L, CERTIFIED_COPY)), kafkaConsumer);
+
+        // Then
+        verify(transactionalOutputKafkaTemplate).send(republished.capture());
+        assertThat(republished.getValue().topic(), is("echo-retry"));
+        assertThat(republished.getValue().value(), is(CERTIFIED_COPY));
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+        verify(kafkaTemplate, never()).executeInTransaction(any());
+    }
+
+    @Test
+    @DisplayName("consume() rolls back the transaction when an upstream API is unavailable, republishing nothing")
+    void consumeInTransactionRollsBackWhenUpstreamUnavailable() {
+
+        // Given
+        consumerUnderTest = new BatchConsumer(service, kafkaTemplate, rawKafkaTemplate,
+                transactionalOutputKafkaTemplate, new OffsetTracker(),
+                registry, logger, "echo-consumer", "echo", "echo-invalid", 100L, true);
+        when(service.processMessageAsync(any(KafkaServiceParameters.class), any(Executor.class)))
+                .thenReturn(CompletableFuture.failedFuture(new UpstreamUnavailableException("Test exception",
+                        new IllegalStateException("Circuit breaker open"))));
+        final var records = List.of(record(0L, CERTIFIED_COPY));
+
+        // When and Then
+        assertThrows(RetryableException.class, () -> consumerUnderTest.consume(records, kafkaConsumer));
+        verify(transactionalOutputKafkaTemplate, never()).send(any(ProducerRecord.class));
+    }
+
+    private static String classificationOf(final ProducerRecord<?, ?> producerRecord) {
+        return new String(producerRecord.headers().lastHeader(FailureClassification.HEADER).value(),
+                StandardCharsets.UTF_8);
+    }
+
+    private static ConsumerRecord<String, ItemOrderedCertifiedCopy> record(final long offset,
+                                                                           final ItemOrderedCertifiedCopy value) {
+        return new ConsumerRecord<>("echo", 0, offset, "key", value);
+    }
+}
@@ -0,0 +1,137 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerInterceptor;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.springframework.kafka.listener.ContainerProperties.AckMode.COUNT;
+import static org.springframework.kafka.listener.ContainerProperties.AckMode.COUNT_TIME;
+import static org.springframework.kafka.listener.ContainerProperties.AckMode.RECORD;
+import static org.springframework.kafka.listener.ContainerProperties.AckMode.TIME;
+
+/**
+ * "Test" class re-purposed to compare the offset commit overhead of the ack modes supported by the main consumer
+ * (<code>consumer.ack_mode</code>), by consuming the same records from an embedded broker under each of them. The
+ * listener does no work, so the differences in elapsed time are down to the commits. This is NOT to be run as
+ * part of an automated test suite. It is for manual testing only.
+ */
+@Tag("manual")
+@EmbeddedKafka(topics = CommitPolicyBenchmark.TOPIC)
+@SuppressWarnings("squid:S3577") // This is NOT to be run as part of an automated test suite.
+class CommitPolicyBenchmark {
+
+    static final String TOPIC = "commit-policy-benchmark";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("CommitPolicyBenchmark");
+
+    private static final int RECORDS = 20_000;
+    private static final int ACK_COUNT = 100;
+    private static final long ACK_TIME_MS = 1000L;
+    private static final int CONSUME_TIMEOUT_SECONDS = 120;
+
+    @SuppressWarnings("squid:S2699") // at least one assertion
+    @Test
+    void compareCommitPolicies(final EmbeddedKafkaBroker broker) throws InterruptedException {
+        produceRecords(broker.getBrokersAsString());
+        for (final var ackMode : List.of(RECORD, COUNT, TIME, COUNT_TIME)) {
+            CommitCountingInterceptor.COMMITS.set(0);
+            final var start = System.nanoTime();
+            consumeRecords(broker.getBrokersAsString(), ackMode);
+            final var elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            LOGGER.info("Ack mode " + ackMode + ": consumed " + RECORDS + " records in " + elapsedMillis
+                    + "ms with " + CommitCountingInterceptor.COMMITS.get() + " offset commits.");
+        }
+    }
+
+    private static void produceRecords(final String bootstrapServers) {
+        try (var producer = new KafkaProducer<>(
+                Map.<String, Object>of(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers),
+                new StringSerializer(), new ByteArraySerializer())) {
+            final var payload = new byte[1024];
+            for (int index = 0; index < RECORDS; index++) {
+                producer.send(new ProducerRecord<>(TOPIC, "ORD-" + index, payload));
+            }
+            producer.flush();
+        }
+    }
+
+    private static void consumeRecords(final String bootstrapServers, final ContainerProperties.AckMode ackMode)
+            throws InterruptedException {
+        final var consumerFactory = new DefaultKafkaConsumerFactory<>(
+                Map.<String, Object>of(
+                        ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+                        ConsumerConfig.GROUP_ID_CONFIG, UUID.randomUUID().toString(),
+                        ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest",
+                        ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false",
+                        ConsumerConfig.INTERCEPTOR_CLASSES_CONFIG, CommitCountingInterceptor.class.getName()),
+                new StringDeserializer(), new ByteArrayDeserializer());
+        final var consumed = new CountDownLatch(RECORDS);
+        final var containerProperties = new ContainerProperties(TOPIC);
+        containerProperties.setAckMode(ackMode);
+        containerProperties.setAckCount(ACK_COUNT);
+        containerProperties.setAckTime(ACK_TIME_MS);
+        containerProperties.setMessageListener((MessageListener<String, byte[]>) consumerRecord -> consumed.countDown());
+        final var container = new KafkaMessageListenerContainer<>(consumerFactory, containerProperties);
+        container.start();
+        try {
+            if (!consumed.await(CONSUME_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.error("Timed out consuming records with ack mode " + ackMode + ".");
+            }
+        } finally {
+            // Stopping the container commits any offsets still pending.
+            container.stop();
+        }
+    }
+
+    /**
+     * Counts the offset commits completed by the consumers it is configured on.
+     */
+    public static class CommitCountingInterceptor implements ConsumerInterceptor<String, byte[]> {
+
+        static final AtomicInteger COMMITS = new AtomicInteger();
+
+        @Override
+        public ConsumerRecords<String, byte[]> onConsume(final ConsumerRecords<String, byte[]> records) {
+            return records;
+        }
+
+        @Override
+        public void onCommit(final Map<TopicPartition, OffsetAndMetadata> offsets) {
+            COMMITS.incrementAndGet();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void configure(final Map<String, ?> configs) {
+        }
+    }
+}
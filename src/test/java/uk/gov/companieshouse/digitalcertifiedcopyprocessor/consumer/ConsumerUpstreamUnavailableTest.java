@@ -0,0 +1,86 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.config.TestConfig;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.UpstreamUnavailableException;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.KafkaService;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.KafkaServiceParameters;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.TestUtils;
+import uk.gov.companieshouse.itemorderedcertifiedcopy.ItemOrderedCertifiedCopy;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.CERTIFIED_COPY;
+
+@SpringBootTest
+@EmbeddedKafka(
+        topics = {"echo", "echo-retry", "echo-error", "echo-invalid"},
+        controlledShutdown = true
+)
+@TestPropertySource(locations = "classpath:application-test_main_retryable.yml",
+        properties = "upstream.redelivery_interval_ms=100")
+@Import(TestConfig.class)
+@ActiveProfiles("test_main_retryable")
+class ConsumerUpstreamUnavailableTest {
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    @Autowired
+    private KafkaConsumer<String, ItemOrderedCertifiedCopy> testConsumer;
+
+    @Autowired
+    private KafkaProducer<String, ItemOrderedCertifiedCopy> testProducer;
+
+    @Autowired
+    private CountDownLatch latch;
+
+    @MockitoBean
+    private KafkaService service;
+
+    @Test
+    void testRedeliverFromMainTopicWhileUpstreamUnavailable() throws InterruptedException {
+        //given
+        embeddedKafkaBroker.consumeFromAllEmbeddedTopics(testConsumer);
+        final var unavailable = new UpstreamUnavailableException("Circuit breaker open");
+        doThrow(unavailable, unavailable, unavailable).doNothing().when(service).processMessage(any());
+
+        //when
+        testProducer.send(new ProducerRecord<>(
+                "echo", 0, System.currentTimeMillis(), "key", CERTIFIED_COPY));
+        if (!latch.await(30L, TimeUnit.SECONDS)) {
+            fail("Timed out waiting for latch");
+        }
+
+        //then
+        ConsumerRecords<?, ?> consumerRecords = KafkaTestUtils.getRecords(testConsumer, Duration.of(10000L, ChronoUnit.MILLIS), 1);
+        assertThat(TestUtils.noOfRecordsForTopic(consumerRecords, "echo"), is(1));
+        assertThat(TestUtils.noOfRecordsForTopic(consumerRecords, "echo-retry"), is(0));
+        assertThat(TestUtils.noOfRecordsForTopic(consumerRecords, "echo-error"), is(0));
+        assertThat(TestUtils.noOfRecordsForTopic(consumerRecords, "echo-invalid"), is(0));
+        verify(service, times(4)).processMessage(new KafkaServiceParameters(CERTIFIED_COPY));
+    }
+}
@@ -0,0 +1,131 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.listener.ListenerExecutionFailedException;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.NonRetryableException;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
+import uk.gov.companieshouse.itemorderedcertifiedcopy.ItemOrderedCertifiedCopy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.CERTIFIED_COPY;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.TestUtils.undeserialisableRecord;
+
+/**
+ * Unit tests the {@link InvalidMessageRecoverer} class.
+ */
+@ExtendWith(MockitoExtension.class)
+class InvalidMessageRecovererTest {
+
+    private static final ConsumerRecord<String, ItemOrderedCertifiedCopy> FAILED_RECORD =
+            new ConsumerRecord<>("echo", 0, 0L, "key", CERTIFIED_COPY);
+
+    @Mock
+    private KafkaOperations<Object, Object> template;
+
+    @Mock
+    private KafkaOperations<String, byte[]> rawTemplate;
+
+    private InvalidMessageRecoverer recovererUnderTest;
+
+    @BeforeEach
+    void setUp() {
+        recovererUnderTest = new InvalidMessageRecoverer(producerRecord -> template, rawTemplate,
+                (consumerRecord, exception) -> new TopicPartition("echo-retry", 0), "echo-invalid");
+        recovererUnderTest.setHeadersFunction(InvalidMessageRecoverer::classificationHeaders);
+    }
+
+    @Test
+    @DisplayName("accept() republishes a message failing retryably to the retry topic")
+    void acceptRepublishesRetryableFailureToRetryTopic() {
+
+        // Given
+        when(template.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        recovererUnderTest.accept(FAILED_RECORD,
+                new ListenerExecutionFailedException("Listener failed", new RetryableException("Test exception")));
+
+        // Then
+        final var republished = republished();
+        assertThat(republished.topic(), is("echo-retry"));
+        assertThat(republished.partition(), is(0));
+        assertThat(republished.value(), is(CERTIFIED_COPY));
+        assertThat(classificationOf(republished), is("RETRYABLE"));
+    }
+
+    @Test
+    @DisplayName("accept() republishes a message failing non-retryably to the invalid message topic")
+    void acceptRepublishesNonRetryableFailureToInvalidTopic() {
+
+        // Given
+        when(template.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        recovererUnderTest.accept(FAILED_RECORD,
+                new ListenerExecutionFailedException("Listener failed", new NonRetryableException("Test exception")));
+
+        // Then
+        final var republished = republished();
+        assertThat(republished.topic(), is("echo-invalid"));
+        assertThat(republished.partition(), is(nullValue()));
+        assertThat(republished.key(), is("key"));
+        assertThat(republished.value(), is(CERTIFIED_COPY));
+        assertThat(classificationOf(republished), is("NON_RETRYABLE"));
+    }
+
+    @Test
+    @DisplayName("accept() republishes an undeserialisable message to the invalid message topic as consumed")
+    void acceptRepublishesUndeserialisableMessageAsConsumed() {
+
+        // Given
+        final var data = "not an avro message".getBytes(StandardCharsets.UTF_8);
+        final var undeserialisable = undeserialisableRecord("echo", 0L, data);
+        final var exception = DeserializationFailures.of(undeserialisable).orElseThrow();
+        when(rawTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        recovererUnderTest.accept(undeserialisable, new ListenerExecutionFailedException("Listener failed", exception));
+
+        // Then
+        final ArgumentCaptor<ProducerRecord<String, byte[]>> captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(rawTemplate).send(captor.capture());
+        final var republished = captor.getValue();
+        assertThat(republished.topic(), is("echo-invalid"));
+        assertThat(republished.value(), is(data));
+        assertThat(classificationOf(republished), is("NON_RETRYABLE"));
+        assertThat(new String(republished.headers().lastHeader(DeserializationFailures.HEADER).value(),
+                StandardCharsets.UTF_8), containsString("Test exception"));
+        verify(template, never()).send(any(ProducerRecord.class));
+    }
+
+    private ProducerRecord<?, ?> republished() {
+        final ArgumentCaptor<ProducerRecord<Object, Object>> republished = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(template).send(republished.capture());
+        return republished.getValue();
+    }
+
+    private static String classificationOf(final ProducerRecord<?, ?> producerRecord) {
+        return new String(producerRecord.headers().lastHeader(FailureClassification.HEADER).value(),
+                StandardCharsets.UTF_8);
+    }
+}
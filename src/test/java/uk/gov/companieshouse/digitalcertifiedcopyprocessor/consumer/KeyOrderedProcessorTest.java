@@ -0,0 +1,76 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Unit tests the {@link KeyOrderedProcessor} class.
+ */
+class KeyOrderedProcessorTest {
+
+    private final KeyOrderedProcessor<String, String> processorUnderTest = new KeyOrderedProcessor<>();
+
+    @Test
+    @DisplayName("process() processes records sharing a key in offset order, even after a failure")
+    void processPreservesOrderPerKey() {
+
+        // Given
+        final Queue<Long> processed = new ConcurrentLinkedQueue<>();
+        final var records = List.of(record("ORD-1", 0L), record("ORD-1", 1L), record("ORD-1", 2L));
+
+        // When
+        final var outcomes = processorUnderTest.process(records, consumerRecord -> {
+            processed.add(consumerRecord.offset());
+            if (consumerRecord.offset() == 1L) {
+                throw new IllegalStateException("failed");
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+        CompletableFuture.allOf(outcomes.toArray(CompletableFuture[]::new)).handle((ignored, ex) -> null).join();
+
+        // Then
+        assertThat(processed, contains(0L, 1L, 2L));
+        assertThat(outcomes.get(1).isCompletedExceptionally(), is(true));
+        assertThat(outcomes.get(2).isCompletedExceptionally(), is(false));
+    }
+
+    @Test
+    @DisplayName("process() starts records with different keys without waiting for each other")
+    void processRunsDifferentKeysConcurrently() {
+
+        // Given
+        final Queue<Long> started = new ConcurrentLinkedQueue<>();
+        final List<CompletableFuture<Void>> pending = List.of(new CompletableFuture<>(), new CompletableFuture<>());
+        final var records = List.of(record("ORD-1", 0L), record("ORD-2", 1L), record("ORD-1", 2L));
+
+        // When
+        final var outcomes = processorUnderTest.process(records, consumerRecord -> {
+            started.add(consumerRecord.offset());
+            return consumerRecord.offset() == 2L
+                    ? CompletableFuture.completedFuture(null)
+                    : pending.get((int) consumerRecord.offset());
+        });
+
+        // Then
+        assertThat(started, contains(0L, 1L));
+        pending.get(0).complete(null);
+        assertThat(started, contains(0L, 1L, 2L));
+        assertThat(outcomes.get(1).isDone(), is(false));
+        pending.get(1).complete(null);
+        CompletableFuture.allOf(outcomes.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private static ConsumerRecord<String, String> record(final String key, final long offset) {
+        return new ConsumerRecord<>("echo", 0, offset, key, "value");
+    }
+}
@@ -0,0 +1,96 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.anEmptyMap;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Unit tests the {@link OffsetTracker} class.
+ */
+class OffsetTrackerTest {
+
+    private static final TopicPartition PARTITION_0 = new TopicPartition("echo", 0);
+    private static final TopicPartition PARTITION_1 = new TopicPartition("echo", 1);
+
+    private final OffsetTracker trackerUnderTest = new OffsetTracker();
+
+    @Test
+    @DisplayName("position() commits past every record when all are completed")
+    void positionCommitsWholeBatchWhenAllCompleted() {
+
+        // Given
+        final var records = List.of(record(0, 10L), record(0, 11L), record(1, 5L));
+        records.forEach(trackerUnderTest::markCompleted);
+
+        // When
+        final var position = trackerUnderTest.position(records);
+
+        // Then
+        assertThat(position.offsets(), is(Map.of(
+                PARTITION_0, new OffsetAndMetadata(12L),
+                PARTITION_1, new OffsetAndMetadata(6L))));
+        assertThat(position.rewindTo(), is(anEmptyMap()));
+    }
+
+    @Test
+    @DisplayName("position() only commits the contiguous completed prefix of each partition")
+    void positionOnlyCommitsContiguousCompletedPrefix() {
+
+        // Given
+        final var records = List.of(record(0, 10L), record(0, 11L), record(0, 12L), record(1, 5L));
+        trackerUnderTest.markCompleted(record(0, 10L));
+        trackerUnderTest.markCompleted(record(0, 12L));
+
+        // When
+        final var position = trackerUnderTest.position(records);
+
+        // Then
+        assertThat(position.offsets(), is(Map.of(PARTITION_0, new OffsetAndMetadata(11L))));
+        assertThat(position.rewindTo(), is(Map.of(PARTITION_0, 11L, PARTITION_1, 5L)));
+        assertThat(trackerUnderTest.isCompleted(record(0, 10L)), is(false));
+        assertThat(trackerUnderTest.isCompleted(record(0, 12L)), is(true));
+    }
+
+    @Test
+    @DisplayName("onPartitionsRevokedAfterCommit() forgets the completed offsets of the partitions revoked")
+    void onPartitionsRevokedForgetsPartitions() {
+
+        // Given
+        trackerUnderTest.markCompleted(record(0, 12L));
+        trackerUnderTest.markCompleted(record(1, 7L));
+
+        // When
+        trackerUnderTest.onPartitionsRevokedAfterCommit(null, List.of(PARTITION_0));
+
+        // Then
+        assertThat(trackerUnderTest.isCompleted(record(0, 12L)), is(false));
+        assertThat(trackerUnderTest.isCompleted(record(1, 7L)), is(true));
+    }
+
+    @Test
+    @DisplayName("onPartitionsAssigned() forgets any completed offsets left over for the partitions assigned")
+    void onPartitionsAssignedForgetsPartitions() {
+
+        // Given
+        trackerUnderTest.markCompleted(record(0, 12L));
+
+        // When
+        trackerUnderTest.onPartitionsAssigned(null, List.of(PARTITION_0));
+
+        // Then
+        assertThat(trackerUnderTest.isCompleted(record(0, 12L)), is(false));
+    }
+
+    private static ConsumerRecord<String, String> record(final int partition, final long offset) {
+        return new ConsumerRecord<>("echo", partition, offset, "key", "value");
+    }
+}
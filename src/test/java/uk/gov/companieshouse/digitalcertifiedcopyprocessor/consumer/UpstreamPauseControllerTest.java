@@ -0,0 +1,125 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.UpstreamUnavailableException;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.UpstreamGuard;
+import uk.gov.companieshouse.logging.Logger;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.UpstreamGuard.Upstream.DOCUMENT_API;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.UpstreamGuard.Upstream.FILING_HISTORY_API;
+
+/**
+ * Unit tests the {@link UpstreamPauseController} class.
+ */
+@ExtendWith(MockitoExtension.class)
+class UpstreamPauseControllerTest {
+
+    @Mock
+    private KafkaListenerEndpointRegistry registry;
+
+    @Mock
+    private MessageListenerContainer mainContainer;
+
+    @Mock
+    private MessageListenerContainer retryContainer;
+
+    @Mock
+    private MessageListenerContainer otherContainer;
+
+    @Mock
+    private Logger logger;
+
+    @Mock
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private UpstreamGuard upstreamGuard;
+
+    @BeforeEach
+    void setUp() {
+        upstreamGuard = new UpstreamGuard(50, 4, 60000, 20, 0, 0, 0, meterRegistry);
+        new UpstreamPauseController(registry, upstreamGuard, logger, "echo-consumer");
+        when(registry.getListenerContainerIds())
+                .thenReturn(Set.of("echo-consumer", "echo-consumer-retry", "other-consumer"));
+        when(registry.getListenerContainer("echo-consumer")).thenReturn(mainContainer);
+        when(registry.getListenerContainer("echo-consumer-retry")).thenReturn(retryContainer);
+    }
+
+    @Test
+    @DisplayName("pauses the containers of the consumer group once a circuit breaker opens")
+    void pausesContainersOnceCircuitBreakerOpens() {
+
+        // When
+        upstreamGuard.getCircuitBreakers().get(DOCUMENT_API).transitionToOpenState();
+
+        // Then
+        verify(mainContainer).pause();
+        verify(retryContainer).pause();
+        verify(otherContainer, never()).pause();
+    }
+
+    @Test
+    @DisplayName("resumes the containers only once no circuit breaker is open")
+    void resumesContainersOnceNoCircuitBreakerOpen() {
+
+        // Given
+        upstreamGuard.getCircuitBreakers().get(DOCUMENT_API).transitionToOpenState();
+        upstreamGuard.getCircuitBreakers().get(FILING_HISTORY_API).transitionToOpenState();
+        when(mainContainer.isPauseRequested()).thenReturn(true);
+        when(retryContainer.isPauseRequested()).thenReturn(true);
+
+        // When
+        upstreamGuard.getCircuitBreakers().get(DOCUMENT_API).transitionToHalfOpenState();
+
+        // Then
+        verify(mainContainer, never()).resume();
+
+        // When
+        upstreamGuard.getCircuitBreakers().get(FILING_HISTORY_API).transitionToHalfOpenState();
+
+        // Then
+        verify(mainContainer).resume();
+        verify(retryContainer).resume();
+    }
+
+    @Test
+    @DisplayName("pauses the containers of the consumer group once a rate limit is reached, resuming them later")
+    void pausesContainersOnceRateLimitReached() {
+
+        // Given
+        final var rateLimitedGuard = new UpstreamGuard(50, 4, 60000, 20, 0, 1, 500, meterRegistry);
+        new UpstreamPauseController(registry, rateLimitedGuard, logger, "echo-consumer");
+        rateLimitedGuard.call(DOCUMENT_API, () -> "result");
+
+        // When
+        assertThrows(UpstreamUnavailableException.class, () -> rateLimitedGuard.call(DOCUMENT_API, () -> "result"));
+
+        // Then
+        verify(mainContainer).pause();
+        verify(retryContainer).pause();
+        verify(otherContainer, never()).pause();
+
+        // When
+        when(mainContainer.isPauseRequested()).thenReturn(true);
+        when(retryContainer.isPauseRequested()).thenReturn(true);
+
+        // Then
+        verify(mainContainer, timeout(5000)).resume();
+        verify(retryContainer, timeout(5000)).resume();
+    }
+}
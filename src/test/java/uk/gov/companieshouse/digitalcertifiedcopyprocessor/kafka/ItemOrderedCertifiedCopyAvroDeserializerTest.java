@@ -0,0 +1,142 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka;
+
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import uk.gov.companieshouse.itemorderedcertifiedcopy.ItemOrderedCertifiedCopy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka.ItemOrderedCertifiedCopyAvroDeserializer.ORIGINAL_VALUE_HEADER;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.CERTIFIED_COPY;
+
+/**
+ * Unit tests the {@link ItemOrderedCertifiedCopyAvroDeserializer} class.
+ */
+class ItemOrderedCertifiedCopyAvroDeserializerTest {
+
+    private static final String TOPIC = "echo";
+
+    private final ItemOrderedCertifiedCopyAvroDeserializer deserializerUnderTest =
+            new ItemOrderedCertifiedCopyAvroDeserializer();
+
+    @Test
+    @DisplayName("deserialize() retains the bytes the message was deserialized from in a header")
+    void deserializeRetainsOriginalValue() {
+
+        // Given
+        final var serialized = new ItemOrderedCertifiedCopyAvroSerializer().serialize(TOPIC, CERTIFIED_COPY);
+        final var headers = new RecordHeaders();
+
+        // When
+        final var deserialized = deserializerUnderTest.deserialize(TOPIC, headers, serialized);
+
+        // Then
+        assertThat(deserialized, is(CERTIFIED_COPY));
+        assertThat(headers.lastHeader(ORIGINAL_VALUE_HEADER).value(), is(sameInstance(serialized)));
+    }
+
+    @Test
+    @DisplayName("the serializer republishes a consumed message as the very bytes it was consumed from")
+    void serializerRepublishesOriginalValue() {
+
+        // Given
+        final var serialized = new ItemOrderedCertifiedCopyAvroSerializer().serialize(TOPIC, CERTIFIED_COPY);
+        final var headers = new RecordHeaders();
+        final var deserialized = deserializerUnderTest.deserialize(TOPIC, headers, serialized);
+
+        // When
+        final var republished = new ItemOrderedCertifiedCopyAvroSerializer()
+                .serialize(TOPIC + "-retry", headers, deserialized);
+
+        // Then
+        assertThat(republished, is(sameInstance(serialized)));
+        assertThat(headers.lastHeader(ORIGINAL_VALUE_HEADER), is(nullValue()));
+    }
+
+    @Test
+    @DisplayName("deserialize() decodes each message into a new record by default")
+    void deserializeDoesNotReuseRecordsByDefault() {
+
+        // Given
+        final var serialized = new ItemOrderedCertifiedCopyAvroSerializer().serialize(TOPIC, CERTIFIED_COPY);
+        deserializerUnderTest.configure(Map.of("max.poll.records", "1"), false);
+
+        // When
+        final var first = deserializerUnderTest.deserialize(TOPIC, serialized);
+        final var second = deserializerUnderTest.deserialize(TOPIC, serialized);
+
+        // Then
+        assertThat(second, is(not(sameInstance(first))));
+    }
+
+    @Test
+    @DisplayName("deserialize() reuses the records of the previous poll when constructed to reuse records")
+    void deserializeReusesRecordsOfPreviousPoll() {
+
+        // Given
+        final var serializer = new ItemOrderedCertifiedCopyAvroSerializer();
+        final var other = ItemOrderedCertifiedCopy.newBuilder(CERTIFIED_COPY).setOrderNumber("ORD-OTHER").build();
+        final var deserializer = new ItemOrderedCertifiedCopyAvroDeserializer(true);
+        deserializer.configure(Map.of("max.poll.records", "2"), false);
+
+        // When
+        final var first = deserializer.deserialize(TOPIC, serializer.serialize(TOPIC, CERTIFIED_COPY));
+        final var second = deserializer.deserialize(TOPIC, serializer.serialize(TOPIC, CERTIFIED_COPY));
+        final var firstOfNextPoll = deserializer.deserialize(TOPIC, serializer.serialize(TOPIC, other));
+
+        // Then
+        assertThat(second, is(not(sameInstance(first))));
+        assertThat(firstOfNextPoll, is(sameInstance(first)));
+        assertThat(firstOfNextPoll, is(other));
+        assertThat(second, is(CERTIFIED_COPY));
+    }
+
+    @Test
+    @DisplayName("deserialize() keeps every record of a poll of more than 500 messages when reusing records")
+    void deserializeKeepsEveryRecordOfLargePoll() {
+
+        // Given
+        final var maxPollRecords = 600;
+        final var serializer = new ItemOrderedCertifiedCopyAvroSerializer();
+        final var deserializer = new ItemOrderedCertifiedCopyAvroDeserializer(true);
+        deserializer.configure(Map.of("max.poll.records", Integer.toString(maxPollRecords)), false);
+        final List<ItemOrderedCertifiedCopy> poll = new ArrayList<>();
+
+        // When
+        for (int index = 0; index < maxPollRecords; index++) {
+            final var message = ItemOrderedCertifiedCopy.newBuilder(CERTIFIED_COPY)
+                    .setOrderNumber("ORD-" + index)
+                    .build();
+            poll.add(deserializer.deserialize(TOPIC, serializer.serialize(TOPIC, message)));
+        }
+
+        // Then
+        for (int index = 0; index < maxPollRecords; index++) {
+            assertThat(poll.get(index).getOrderNumber(), is("ORD-" + index));
+        }
+    }
+
+    @Test
+    @DisplayName("configure() fails when reusing records without max.poll.records")
+    void configureFailsWithoutMaxPollRecordsWhenReusingRecords() {
+
+        // Given
+        final var deserializer = new ItemOrderedCertifiedCopyAvroDeserializer(true);
+
+        // When
+        final var exception = assertThrows(ConfigException.class, () -> deserializer.configure(Map.of(), false));
+
+        // Then
+        assertThat(exception.getMessage(), is("max.poll.records must be configured to reuse records."));
+    }
+}
@@ -0,0 +1,54 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka;
+
+import consumer.deserialization.AvroDeserializer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import uk.gov.companieshouse.itemorderedcertifiedcopy.ItemOrderedCertifiedCopy;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.CERTIFIED_COPY;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.CERTIFIED_COPY_2;
+
+/**
+ * Unit tests the {@link ItemOrderedCertifiedCopyAvroSerializer} class.
+ */
+class ItemOrderedCertifiedCopyAvroSerializerTest {
+
+    private static final String TOPIC = "echo-retry";
+
+    private final ItemOrderedCertifiedCopyAvroSerializer serializerUnderTest =
+            new ItemOrderedCertifiedCopyAvroSerializer();
+
+    @Test
+    @DisplayName("serialize() produces messages that the consumers deserialize to those serialized")
+    void serializeRoundTrips() {
+
+        // When
+        final var first = serializerUnderTest.serialize(TOPIC, CERTIFIED_COPY);
+        final var second = serializerUnderTest.serialize(TOPIC, CERTIFIED_COPY_2);
+
+        // Then
+        assertThat(deserialize(first), is(CERTIFIED_COPY));
+        assertThat(deserialize(second), is(CERTIFIED_COPY_2));
+    }
+
+    @Test
+    @DisplayName("serialize() produces the same bytes for the same message every time")
+    void serializeIsRepeatable() {
+
+        // Given
+        final var expected = serializerUnderTest.serialize(TOPIC, CERTIFIED_COPY);
+        serializerUnderTest.serialize(TOPIC, CERTIFIED_COPY_2);
+
+        // When
+        final var serialized = serializerUnderTest.serialize(TOPIC, CERTIFIED_COPY);
+
+        // Then
+        assertThat(serialized, is(expected));
+    }
+
+    private static ItemOrderedCertifiedCopy deserialize(final byte[] serialized) {
+        return new AvroDeserializer<>(ItemOrderedCertifiedCopy.class).deserialize(TOPIC, serialized);
+    }
+}
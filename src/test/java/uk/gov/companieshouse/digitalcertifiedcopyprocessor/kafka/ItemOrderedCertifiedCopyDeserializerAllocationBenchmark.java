@@ -0,0 +1,96 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import uk.gov.companieshouse.itemorderedcertifiedcopy.ItemOrderedCertifiedCopy;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.CERTIFIED_COPY;
+
+/**
+ * "Test" class re-purposed to compare the bytes allocated, the time taken and the garbage collection incurred per
+ * message by the {@link ItemOrderedCertifiedCopyAvroDeserializer} when decoding messages into new records with those
+ * when it reuses the records of the previous poll. Messages are deserialized in polls of
+ * <code>max.poll.records</code>, each poll being held onto until the next, much as by the batch consumer. This is
+ * NOT to be run as part of an automated test suite. It is for manual testing only.
+ */
+@Tag("manual")
+@SuppressWarnings("squid:S3577") // This is NOT to be run as part of an automated test suite.
+class ItemOrderedCertifiedCopyDeserializerAllocationBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("ItemOrderedCertifiedCopyDeserializerAllocationBenchmark");
+
+    private static final String TOPIC = "item-ordered-certified-copy";
+    private static final int MAX_POLL_RECORDS = 500;
+    private static final int WARM_UP_POLLS = 1_000;
+    private static final int POLLS = 10_000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @SuppressWarnings("squid:S2699") // at least one assertion
+    @Test
+    void compareAllocationsPerMessage() {
+        final var data = new ItemOrderedCertifiedCopyAvroSerializer().serialize(TOPIC, CERTIFIED_COPY);
+        measure("new records", new ItemOrderedCertifiedCopyAvroDeserializer(false), data);
+        measure("reused records", new ItemOrderedCertifiedCopyAvroDeserializer(true), data);
+    }
+
+    private static void measure(final String name,
+                                final ItemOrderedCertifiedCopyAvroDeserializer deserializer,
+                                final byte[] data) {
+        deserializer.configure(Map.of("max.poll.records", Integer.toString(MAX_POLL_RECORDS)), false);
+        poll(deserializer, data, WARM_UP_POLLS);
+        System.gc();
+
+        final var threadId = Thread.currentThread().threadId();
+        final var collectionsBefore = collections();
+        final var collectionMillisBefore = collectionMillis();
+        final var allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        final var start = System.nanoTime();
+        final var checksum = poll(deserializer, data, POLLS);
+        final var elapsedNanos = System.nanoTime() - start;
+        final var allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        final long messages = (long) POLLS * MAX_POLL_RECORDS;
+
+        LOGGER.info("Deserializer with " + name + ": " + allocated / messages + " bytes allocated and "
+                + elapsedNanos / messages + "ns per message, " + (collections() - collectionsBefore)
+                + " collections taking " + (collectionMillis() - collectionMillisBefore) + "ms in all (checksum "
+                + checksum + ").");
+        deserializer.close();
+    }
+
+    private static long poll(final ItemOrderedCertifiedCopyAvroDeserializer deserializer,
+                             final byte[] data,
+                             final int polls) {
+        long checksum = 0;
+        List<ItemOrderedCertifiedCopy> batch = new ArrayList<>(MAX_POLL_RECORDS);
+        for (int poll = 0; poll < polls; poll++) {
+            batch = new ArrayList<>(MAX_POLL_RECORDS);
+            for (int index = 0; index < MAX_POLL_RECORDS; index++) {
+                batch.add(deserializer.deserialize(TOPIC, data));
+            }
+            checksum += batch.getLast().getOrderNumber().length();
+        }
+        return checksum + batch.size();
+    }
+
+    private static long collections() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                .sum();
+    }
+
+    private static long collectionMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                .sum();
+    }
+}
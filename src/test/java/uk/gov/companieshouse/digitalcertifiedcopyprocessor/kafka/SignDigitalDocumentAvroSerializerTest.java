@@ -0,0 +1,79 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka;
+
+import consumer.deserialization.AvroDeserializer;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import uk.gov.companieshouse.documentsigning.SignDigitalDocument;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.DOCUMENT;
+
+/**
+ * Unit tests the {@link SignDigitalDocumentAvroSerializer} class.
+ */
+class SignDigitalDocumentAvroSerializerTest {
+
+    private static final String TOPIC = "sign-digital-document";
+
+    private final SignDigitalDocumentAvroSerializer serializerUnderTest = new SignDigitalDocumentAvroSerializer();
+
+    @Test
+    @DisplayName("serialize() produces a message that deserializes to the one serialized")
+    void serializeRoundTrips() {
+
+        // When
+        final var serialized = serializerUnderTest.serialize(TOPIC, DOCUMENT);
+
+        // Then
+        assertThat(deserialize(serialized), is(DOCUMENT));
+    }
+
+    @Test
+    @DisplayName("serialize() does not carry anything over from a larger message serialized before")
+    void serializeReusesBuffersCleanly() {
+
+        // Given
+        final var larger = SignDigitalDocument.newBuilder(DOCUMENT)
+                .setPrivateS3Location(DOCUMENT.getPrivateS3Location().repeat(50))
+                .build();
+        final var expected = new SignDigitalDocumentAvroSerializer().serialize(TOPIC, DOCUMENT);
+        serializerUnderTest.serialize(TOPIC, larger);
+
+        // When
+        final var serialized = serializerUnderTest.serialize(TOPIC, DOCUMENT);
+
+        // Then
+        assertThat(serialized, is(expected));
+        assertThat(deserialize(serialized), is(DOCUMENT));
+    }
+
+    @Test
+    @DisplayName("serialize() reports the cause of a message failing to serialize")
+    void serializeChainsCause() {
+
+        // Given
+        final var invalid = new SignDigitalDocument();
+
+        // When
+        final var exception = assertThrows(SerializationException.class,
+                () -> serializerUnderTest.serialize(TOPIC, invalid));
+
+        // Then
+        assertThat(exception.getCause(), is(notNullValue()));
+    }
+
+    @Test
+    @DisplayName("serialize() serializes a null message to null")
+    void serializeNull() {
+        assertThat(serializerUnderTest.serialize(TOPIC, null), is(nullValue()));
+    }
+
+    private static SignDigitalDocument deserialize(final byte[] serialized) {
+        return new AvroDeserializer<>(SignDigitalDocument.class).deserialize(TOPIC, serialized);
+    }
+}
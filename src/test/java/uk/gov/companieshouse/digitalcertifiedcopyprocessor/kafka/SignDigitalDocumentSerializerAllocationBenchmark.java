@@ -0,0 +1,83 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka;
+
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.kafka.common.serialization.Serializer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import uk.gov.companieshouse.documentsigning.SignDigitalDocument;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.DOCUMENT;
+
+/**
+ * "Test" class re-purposed to compare the bytes allocated and the time taken per message by the
+ * {@link SignDigitalDocumentAvroSerializer} with those of the serializer it replaced, which built a new datum writer,
+ * output stream and encoder for every message. The allocations are those of the benchmarking thread as reported by
+ * the JVM. This is NOT to be run as part of an automated test suite. It is for manual testing only.
+ */
+@Tag("manual")
+@SuppressWarnings("squid:S3577") // This is NOT to be run as part of an automated test suite.
+class SignDigitalDocumentSerializerAllocationBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("SignDigitalDocumentSerializerAllocationBenchmark");
+
+    private static final String TOPIC = "sign-digital-document";
+    private static final int WARM_UP_MESSAGES = 200_000;
+    private static final int MESSAGES = 1_000_000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @SuppressWarnings("squid:S2699") // at least one assertion
+    @Test
+    void compareAllocationsPerMessage() {
+        measure("per-message writer and encoder", SignDigitalDocumentSerializerAllocationBenchmark::serializeAfresh);
+        try (var serializer = new SignDigitalDocumentAvroSerializer()) {
+            measure("pooled writer and encoder", serializer);
+        }
+    }
+
+    private static void measure(final String name, final Serializer<SignDigitalDocument> serializer) {
+        long checksum = 0;
+        for (int index = 0; index < WARM_UP_MESSAGES; index++) {
+            checksum += serializer.serialize(TOPIC, DOCUMENT).length;
+        }
+        final var threadId = Thread.currentThread().threadId();
+        final var allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        final var start = System.nanoTime();
+        for (int index = 0; index < MESSAGES; index++) {
+            checksum += serializer.serialize(TOPIC, DOCUMENT).length;
+        }
+        final var elapsedNanos = System.nanoTime() - start;
+        final var allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        LOGGER.info("Serializer with " + name + ": " + allocated / MESSAGES + " bytes allocated and "
+                + elapsedNanos / MESSAGES + "ns per message (checksum " + checksum + ").");
+    }
+
+    /**
+     * Serializes the message as {@link SignDigitalDocumentAvroSerializer} did before its writer and encoders were
+     * reused.
+     */
+    private static byte[] serializeAfresh(final String topic, final SignDigitalDocument data) {
+        final DatumWriter<SignDigitalDocument> datumWriter = new SpecificDatumWriter<>();
+        try (final var out = new ByteArrayOutputStream()) {
+            final var encoder = EncoderFactory.get().binaryEncoder(out, null);
+            datumWriter.setSchema(data.getSchema());
+            datumWriter.write(data, encoder);
+            encoder.flush();
+            final var serializedData = out.toByteArray();
+            encoder.flush();
+            return serializedData;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka;
+
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.specific.SpecificRecord;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import uk.gov.companieshouse.documentsigning.SignDigitalDocument;
+import uk.gov.companieshouse.itemorderedcertifiedcopy.ItemOrderedCertifiedCopy;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.CERTIFIED_COPY;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.DOCUMENT;
+
+/**
+ * "Test" class re-purposed to compare the time taken to encode and decode the messages consumed and produced by the
+ * {@link SpecificRecordCodec compiled codecs} with that taken by Avro's own {@link SpecificDatumWriter} and
+ * {@link SpecificDatumReader}. This is NOT to be run as part of an automated test suite. It is for manual testing
+ * only.
+ */
+@Tag("manual")
+@SuppressWarnings("squid:S3577") // This is NOT to be run as part of an automated test suite.
+class SpecificRecordCodecBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("SpecificRecordCodecBenchmark");
+
+    private static final int WARM_UP_MESSAGES = 500_000;
+    private static final int MESSAGES = 2_000_000;
+
+    @SuppressWarnings("squid:S2699") // at least one assertion
+    @Test
+    void compareCodecs() throws IOException {
+        compare("ItemOrderedCertifiedCopy", CERTIFIED_COPY,
+                SpecificRecordCodec.of(ItemOrderedCertifiedCopy.getClassSchema()));
+        compare("SignDigitalDocument", DOCUMENT, SpecificRecordCodec.of(SignDigitalDocument.getClassSchema()));
+    }
+
+    private static <T extends SpecificRecord> void compare(final String name,
+                                                           final T message,
+                                                           final SpecificRecordCodec<T> codec) throws IOException {
+        final var writer = new SpecificDatumWriter<T>(message.getSchema());
+        final var reader = new SpecificDatumReader<T>(message.getSchema());
+        final var out = new ByteArrayOutputStream();
+        final var encoder = EncoderFactory.get().directBinaryEncoder(out, null);
+        writer.write(message, encoder);
+        final var data = out.toByteArray();
+
+        final Encoding<T> genericEncoding = (datum, binaryEncoder) -> writer.write(datum, binaryEncoder);
+        final Encoding<T> compiledEncoding = codec::encode;
+        final Decoding<T> genericDecoding = binaryDecoder -> reader.read(null, binaryDecoder);
+        final Decoding<T> compiledDecoding = codec::decode;
+
+        encode(message, genericEncoding, out, encoder, WARM_UP_MESSAGES);
+        encode(message, compiledEncoding, out, encoder, WARM_UP_MESSAGES);
+        decode(data, genericDecoding, WARM_UP_MESSAGES);
+        decode(data, compiledDecoding, WARM_UP_MESSAGES);
+
+        LOGGER.info(name + " encoding: generic " + encode(message, genericEncoding, out, encoder, MESSAGES)
+                + "ns, compiled " + encode(message, compiledEncoding, out, encoder, MESSAGES) + "ns per message.");
+        LOGGER.info(name + " decoding: generic " + decode(data, genericDecoding, MESSAGES)
+                + "ns, compiled " + decode(data, compiledDecoding, MESSAGES) + "ns per message.");
+    }
+
+    private static <T> long encode(final T message,
+                                   final Encoding<T> encoding,
+                                   final ByteArrayOutputStream out,
+                                   final BinaryEncoder encoder,
+                                   final int count) throws IOException {
+        final var start = System.nanoTime();
+        for (int index = 0; index < count; index++) {
+            out.reset();
+            encoding.encode(message, encoder);
+        }
+        return (System.nanoTime() - start) / count;
+    }
+
+    private static <T> long decode(final byte[] data, final Decoding<T> decoding, final int count)
+            throws IOException {
+        BinaryDecoder decoder = null;
+        long checksum = 0;
+        final var start = System.nanoTime();
+        for (int index = 0; index < count; index++) {
+            decoder = DecoderFactory.get().binaryDecoder(data, decoder);
+            checksum += decoding.decode(decoder).hashCode();
+        }
+        final var elapsedNanos = System.nanoTime() - start;
+        LOGGER.debug("Checksum " + checksum);
+        return elapsedNanos / count;
+    }
+
+    @FunctionalInterface
+    private interface Encoding<T> {
+        void encode(T datum, BinaryEncoder encoder) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Decoding<T> {
+        T decode(BinaryDecoder decoder) throws IOException;
+    }
+}
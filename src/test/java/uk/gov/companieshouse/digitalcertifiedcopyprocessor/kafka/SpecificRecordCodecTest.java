@@ -0,0 +1,194 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.specific.SpecificRecord;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import uk.gov.companieshouse.documentsigning.SignDigitalDocument;
+import uk.gov.companieshouse.itemorderedcertifiedcopy.ItemOrderedCertifiedCopy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.CERTIFIED_COPY;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.DOCUMENT;
+
+/**
+ * Unit tests the {@link SpecificRecordCodec} class.
+ */
+class SpecificRecordCodecTest {
+
+    @Test
+    @DisplayName("of() compiles the schemas of the messages consumed and produced")
+    void ofCompilesMessageSchemas() {
+        assertThat(SpecificRecordCodec.of(ItemOrderedCertifiedCopy.getClassSchema()).isCompiled(), is(true));
+        assertThat(SpecificRecordCodec.of(SignDigitalDocument.getClassSchema()).isCompiled(), is(true));
+    }
+
+    @Test
+    @DisplayName("of() falls back to Avro's own reader and writer for a schema it cannot compile")
+    void ofFallsBackForUnsupportedSchema() {
+
+        // Given
+        final var schema = new Schema.Parser().parse(
+                "{\"type\":\"record\",\"name\":\"Unknown\",\"fields\":[{\"name\":\"payload\",\"type\":\"bytes\"}]}");
+
+        // When and Then
+        assertThat(SpecificRecordCodec.of(schema).isCompiled(), is(false));
+    }
+
+    @Test
+    @DisplayName("of() falls back to Avro's own reader and writer for a schema with a logical type")
+    void ofFallsBackForLogicalType() throws IOException {
+
+        // Given
+        final var codec = SpecificRecordCodec.<TimestampedRecord>of(TimestampedRecord.SCHEMA$);
+        final var datum = new TimestampedRecord("ORD-123456-123456", Instant.ofEpochMilli(1_700_000_000_000L));
+
+        // When
+        final var encoded = encode(codec, datum);
+        final var decoded = decode(codec, encoded);
+
+        // Then
+        assertThat(codec.isCompiled(), is(false));
+        assertThat(encoded, is(writeWithAvro(datum)));
+        assertThat(decoded.getOrderNumber(), is(datum.getOrderNumber()));
+        assertThat(decoded.getOrderedAt(), is(datum.getOrderedAt()));
+    }
+
+    @Test
+    @DisplayName("encode() writes exactly the bytes Avro's own writer does")
+    void encodeMatchesAvroWriter() throws IOException {
+        assertThat(encode(SpecificRecordCodec.of(ItemOrderedCertifiedCopy.getClassSchema()), CERTIFIED_COPY),
+                is(writeWithAvro(CERTIFIED_COPY)));
+        assertThat(encode(SpecificRecordCodec.of(SignDigitalDocument.getClassSchema()), DOCUMENT),
+                is(writeWithAvro(DOCUMENT)));
+    }
+
+    @Test
+    @DisplayName("decode() reads the messages Avro's own writer writes")
+    void decodeReadsAvroWriterOutput() throws IOException {
+        assertThat(decode(SpecificRecordCodec.<ItemOrderedCertifiedCopy>of(ItemOrderedCertifiedCopy.getClassSchema()),
+                writeWithAvro(CERTIFIED_COPY)), is(CERTIFIED_COPY));
+        assertThat(decode(SpecificRecordCodec.<SignDigitalDocument>of(SignDigitalDocument.getClassSchema()),
+                writeWithAvro(DOCUMENT)), is(DOCUMENT));
+    }
+
+    @Test
+    @DisplayName("decode() reads strings as Strings")
+    void decodeReadsStrings() throws IOException {
+
+        // When
+        final var decoded = decode(SpecificRecordCodec.<ItemOrderedCertifiedCopy>of(
+                ItemOrderedCertifiedCopy.getClassSchema()), writeWithAvro(CERTIFIED_COPY));
+
+        // Then
+        assertThat(decoded.getOrderNumber(), is(instanceOf(String.class)));
+        assertThat(decoded.getFilingHistoryDescriptionValues().keySet().iterator().next(),
+                is(instanceOf(String.class)));
+    }
+
+    @Test
+    @DisplayName("decode() reads a message into the record it is given to reuse")
+    void decodeReusesRecord() throws IOException {
+
+        // Given
+        final var codec = SpecificRecordCodec.<ItemOrderedCertifiedCopy>of(ItemOrderedCertifiedCopy.getClassSchema());
+        final var reuse = ItemOrderedCertifiedCopy.newBuilder(CERTIFIED_COPY).setOrderNumber("ORD-OTHER").build();
+
+        // When
+        final var decoded = codec.decode(DecoderFactory.get().binaryDecoder(writeWithAvro(CERTIFIED_COPY), null), reuse);
+
+        // Then
+        assertThat(decoded, is(sameInstance(reuse)));
+        assertThat(decoded, is(CERTIFIED_COPY));
+    }
+
+    @Test
+    @DisplayName("decode() fails without allocating the length claimed by a string whose length prefix is malformed")
+    void decodeRejectsOversizedStringLength() throws IOException {
+
+        // Given
+        final var codec = SpecificRecordCodec.<ItemOrderedCertifiedCopy>of(ItemOrderedCertifiedCopy.getClassSchema());
+        final var data = withStringLength(writeWithAvro(CERTIFIED_COPY), CERTIFIED_COPY.getOrderNumber(),
+                Integer.MAX_VALUE);
+
+        // When and Then
+        assertThrows(EOFException.class, () -> decode(codec, data));
+    }
+
+    @Test
+    @DisplayName("decode() fails for a message ending part way through a string")
+    void decodeRejectsTruncatedString() throws IOException {
+
+        // Given
+        final var codec = SpecificRecordCodec.<ItemOrderedCertifiedCopy>of(ItemOrderedCertifiedCopy.getClassSchema());
+        final var message = writeWithAvro(CERTIFIED_COPY);
+        final var data = Arrays.copyOf(message, indexOf(message, CERTIFIED_COPY.getOrderNumber()) + 1);
+
+        // When and Then
+        assertThrows(EOFException.class, () -> decode(codec, data));
+    }
+
+    /**
+     * Replaces the length prefix of the string in the message with the length given.
+     */
+    private static byte[] withStringLength(final byte[] message, final String string, final long length)
+            throws IOException {
+        final var index = indexOf(message, string);
+        final var lengthPrefix = new ByteArrayOutputStream();
+        final var encoder = EncoderFactory.get().directBinaryEncoder(lengthPrefix, null);
+        encoder.writeLong(length);
+        encoder.flush();
+        final var out = new ByteArrayOutputStream();
+        // The strings of the test messages are short enough for their own length prefix to be a single byte.
+        out.write(message, 0, index - 1);
+        out.write(lengthPrefix.toByteArray());
+        out.write(message, index, message.length - index);
+        return out.toByteArray();
+    }
+
+    private static int indexOf(final byte[] message, final String string) {
+        final var bytes = string.getBytes(UTF_8);
+        for (int index = 0; index <= message.length - bytes.length; index++) {
+            if (Arrays.equals(message, index, index + bytes.length, bytes, 0, bytes.length)) {
+                return index;
+            }
+        }
+        throw new IllegalArgumentException(string + " not found in message.");
+    }
+
+    private static <T extends SpecificRecord> byte[] encode(final SpecificRecordCodec<T> codec, final T datum)
+            throws IOException {
+        final var out = new ByteArrayOutputStream();
+        final var encoder = EncoderFactory.get().directBinaryEncoder(out, null);
+        codec.encode(datum, encoder);
+        encoder.flush();
+        return out.toByteArray();
+    }
+
+    private static <T extends SpecificRecord> T decode(final SpecificRecordCodec<T> codec, final byte[] data)
+            throws IOException {
+        return codec.decode(DecoderFactory.get().binaryDecoder(data, null));
+    }
+
+    private static <T extends SpecificRecord> byte[] writeWithAvro(final T datum) throws IOException {
+        final var out = new ByteArrayOutputStream();
+        final var encoder = EncoderFactory.get().directBinaryEncoder(out, null);
+        new SpecificDatumWriter<T>(datum.getSchema()).write(datum, encoder);
+        encoder.flush();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,82 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka;
+
+import org.apache.avro.Conversion;
+import org.apache.avro.Schema;
+import org.apache.avro.data.TimeConversions;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificRecordBase;
+
+import java.time.Instant;
+
+/**
+ * A generated Avro type with a field of a logical type, written out as the Avro compiler would generate it.
+ */
+public class TimestampedRecord extends SpecificRecordBase {
+
+    public static final Schema SCHEMA$ = new Schema.Parser().parse(
+            "{\"type\":\"record\",\"name\":\"TimestampedRecord\","
+            + "\"namespace\":\"uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka\",\"fields\":["
+            + "{\"name\":\"order_number\",\"type\":\"string\"},"
+            + "{\"name\":\"ordered_at\",\"type\":{\"type\":\"long\",\"logicalType\":\"timestamp-millis\"}}]}");
+
+    private static final SpecificData MODEL$ = new SpecificData();
+
+    static {
+        MODEL$.addLogicalTypeConversion(new TimeConversions.TimestampMillisConversion());
+    }
+
+    private static final Conversion<?>[] CONVERSIONS =
+            new Conversion<?>[] {null, new TimeConversions.TimestampMillisConversion()};
+
+    private String orderNumber;
+    private Instant orderedAt;
+
+    public TimestampedRecord() {
+    }
+
+    public TimestampedRecord(final String orderNumber, final Instant orderedAt) {
+        this.orderNumber = orderNumber;
+        this.orderedAt = orderedAt;
+    }
+
+    public String getOrderNumber() {
+        return orderNumber;
+    }
+
+    public Instant getOrderedAt() {
+        return orderedAt;
+    }
+
+    @Override
+    public SpecificData getSpecificData() {
+        return MODEL$;
+    }
+
+    @Override
+    public Schema getSchema() {
+        return SCHEMA$;
+    }
+
+    @Override
+    public Conversion<?> getConversion(final int field) {
+        return CONVERSIONS[field];
+    }
+
+    @Override
+    public Object get(final int field) {
+        return switch (field) {
+            case 0 -> orderNumber;
+            case 1 -> orderedAt;
+            default -> throw new IndexOutOfBoundsException("Invalid index: " + field);
+        };
+    }
+
+    @Override
+    public void put(final int field, final Object value) {
+        switch (field) {
+            case 0 -> orderNumber = value != null ? value.toString() : null;
+            case 1 -> orderedAt = (Instant) value;
+            default -> throw new IndexOutOfBoundsException("Invalid index: " + field);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.UpstreamGuard.Upstream.DOCUMENT_API;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.UpstreamGuard.Upstream.FILING_HISTORY_API;
+
+/**
+ * Unit tests the {@link AdaptiveTimeouts} class.
+ */
+class AdaptiveTimeoutsTest {
+
+    private static final int WINDOW_SIZE = 10;
+    private static final int MIN_MILLIS = 200;
+    private static final int MAX_MILLIS = 2000;
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final ObjectProvider<MeterRegistry> meterRegistry =
+            new StaticListableBeanFactory(Map.of("meterRegistry", registry)).getBeanProvider(MeterRegistry.class);
+
+    private final UpstreamGuard upstreamGuard = new UpstreamGuard(50, 20, 30000, 20, 0, 0, 0, meterRegistry);
+
+    @Test
+    @DisplayName("readTimeoutMillis() returns the maximum until enough latencies have been recorded")
+    void readTimeoutIsMaximumWithoutLatencies() {
+
+        // Given
+        final var timeoutsUnderTest = timeouts(true);
+        recordLatencies(DOCUMENT_API, WINDOW_SIZE - 1, 100);
+
+        // When and Then
+        assertThat(timeoutsUnderTest.readTimeoutMillis(DOCUMENT_API), is(MAX_MILLIS));
+    }
+
+    @Test
+    @DisplayName("readTimeoutMillis() derives the timeout of each API from the latencies of its own calls")
+    void readTimeoutIsDerivedFromLatenciesOfApi() {
+
+        // Given
+        final var timeoutsUnderTest = timeouts(true);
+        recordLatencies(DOCUMENT_API, WINDOW_SIZE, 100);
+
+        // When and Then
+        assertThat(timeoutsUnderTest.readTimeoutMillis(DOCUMENT_API), is(300));
+        assertThat(timeoutsUnderTest.readTimeoutMillis(FILING_HISTORY_API), is(MAX_MILLIS));
+        assertThat(registry.get("upstream.read.timeout").tag("api", "document-api").gauge().value(), is(300.0));
+    }
+
+    @Test
+    @DisplayName("readTimeoutMillis() raises the timeout when the latency rises past it")
+    void readTimeoutRisesWithLatency() {
+
+        // Given
+        final var timeoutsUnderTest = timeouts(true);
+        recordLatencies(DOCUMENT_API, WINDOW_SIZE, 100);
+        final var timeoutMillis = timeoutsUnderTest.readTimeoutMillis(DOCUMENT_API);
+
+        // When
+        final var circuitBreaker = upstreamGuard.getCircuitBreakers().get(DOCUMENT_API);
+        for (int call = 0; call < WINDOW_SIZE; call++) {
+            circuitBreaker.onError(timeoutMillis, TimeUnit.MILLISECONDS, new RetryableException("Read timed out"));
+        }
+
+        // Then
+        assertThat(timeoutMillis, is(300));
+        assertThat(timeoutsUnderTest.readTimeoutMillis(DOCUMENT_API), is(900));
+    }
+
+    @Test
+    @DisplayName("readTimeoutMillis() keeps the timeout within its bounds")
+    void readTimeoutIsClamped() {
+
+        // Given
+        final var timeoutsUnderTest = timeouts(true);
+        recordLatencies(DOCUMENT_API, WINDOW_SIZE, 10);
+        recordLatencies(FILING_HISTORY_API, WINDOW_SIZE, 5000);
+
+        // When and Then
+        assertThat(timeoutsUnderTest.readTimeoutMillis(DOCUMENT_API), is(MIN_MILLIS));
+        assertThat(timeoutsUnderTest.readTimeoutMillis(FILING_HISTORY_API), is(MAX_MILLIS));
+    }
+
+    @Test
+    @DisplayName("readTimeoutMillis() returns the maximum when not adaptive")
+    void readTimeoutIsMaximumWhenNotAdaptive() {
+
+        // Given
+        final var timeoutsUnderTest = timeouts(false);
+        recordLatencies(DOCUMENT_API, WINDOW_SIZE, 100);
+
+        // When and Then
+        assertThat(timeoutsUnderTest.readTimeoutMillis(DOCUMENT_API), is(MAX_MILLIS));
+    }
+
+    private AdaptiveTimeouts timeouts(final boolean adaptive) {
+        return new AdaptiveTimeouts(upstreamGuard, adaptive, 50, 3, MIN_MILLIS, MAX_MILLIS, WINDOW_SIZE,
+                meterRegistry);
+    }
+
+    private void recordLatencies(final UpstreamGuard.Upstream upstream, final int calls, final long latencyMillis) {
+        final var circuitBreaker = upstreamGuard.getCircuitBreakers().get(upstream);
+        for (int call = 0; call < calls; call++) {
+            circuitBreaker.onSuccess(latencyMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
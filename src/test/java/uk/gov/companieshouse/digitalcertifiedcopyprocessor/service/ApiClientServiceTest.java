@@ -0,0 +1,43 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.ApiClientService.POOL_NAME;
+
+/**
+ * Unit tests the {@link ApiClientService} class.
+ */
+class ApiClientServiceTest {
+
+    @Test
+    @DisplayName("ApiClientService publishes the limits and state of its connection pool")
+    void publishesConnectionPoolMetrics() {
+
+        // Given
+        final var registry = new SimpleMeterRegistry();
+        final var meterRegistry =
+                new StaticListableBeanFactory(Map.of("meterRegistry", registry)).getBeanProvider(MeterRegistry.class);
+        final var timeouts = new AdaptiveTimeouts(new UpstreamGuard(50, 20, 30000, 20, 0, 0, 0, meterRegistry),
+                false, 99.9, 3, 1000, 2000, 1000, meterRegistry);
+
+        // When
+        final var serviceUnderTest = new ApiClientService(50, 10, 30000, 1000, timeouts, meterRegistry);
+
+        // Then
+        assertThat(registry.get("httpcomponents.httpclient.pool.total.max").tag("httpclient", POOL_NAME)
+                .gauge().value(), is(50.0));
+        assertThat(registry.get("httpcomponents.httpclient.pool.route.max.default").tag("httpclient", POOL_NAME)
+                .gauge().value(), is(10.0));
+        assertThat(registry.get("httpcomponents.httpclient.pool.total.connections").tag("httpclient", POOL_NAME)
+                .tag("state", "leased").gauge().value(), is(0.0));
+        serviceUnderTest.close();
+    }
+}
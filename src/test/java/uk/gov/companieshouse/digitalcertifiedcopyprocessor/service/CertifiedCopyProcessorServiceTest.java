@@ -1,16 +1,33 @@
 package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
 
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.support.SendResult;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.NonRetryableException;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
+import uk.gov.companieshouse.documentsigning.SignDigitalDocument;
 import uk.gov.companieshouse.itemorderedcertifiedcopy.ItemOrderedCertifiedCopy;
+import uk.gov.companieshouse.logging.Logger;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.CERTIFIED_COPY;
@@ -21,6 +38,11 @@ import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants
 @ExtendWith(MockitoExtension.class)
 public class CertifiedCopyProcessorServiceTest {
 
+    private static final long DEADLINE_MILLIS = 200L;
+
+    @Mock
+    private Logger logger;
+
     @Mock
     private FilingHistoryDocumentService filingHistoryDocumentService;
 
@@ -33,9 +55,23 @@ public class CertifiedCopyProcessorServiceTest {
     @Mock
     private FilingHistoryDescriptionService filingHistoryDescriptionService;
 
-    @InjectMocks
+    @Mock
+    private NonBlockingFilingHistoryDocumentService nonBlockingFilingHistoryDocumentService;
+
+    @Mock
+    private NonBlockingDocumentService nonBlockingDocumentService;
+
     private CertifiedCopyProcessorService certifiedCopyProcessorService;
 
+    @BeforeEach
+    void setUp() {
+        // Runs each stage on the calling thread.
+        certifiedCopyProcessorService = new CertifiedCopyProcessorService(logger, filingHistoryDocumentService,
+                documentService, kafkaProducerService, filingHistoryDescriptionService,
+                nonBlockingFilingHistoryDocumentService, nonBlockingDocumentService, Runnable::run,
+                DEADLINE_MILLIS, false);
+    }
+
     @Test
     public void testProcessMessage() throws URISyntaxException {
         //Prepare test data
@@ -50,6 +86,8 @@ public class CertifiedCopyProcessorServiceTest {
         when(documentService.getPrivateUri(documentMetadata)).thenReturn(privateUri);
         when(filingHistoryDescriptionService.getDescription(certifiedCopy.getFilingHistoryDescription()))
                 .thenReturn(convertedFilingHistoryDescription);
+        when(kafkaProducerService.sendMessage(certifiedCopy, privateUri, convertedFilingHistoryDescription))
+                .thenReturn(CompletableFuture.completedFuture(null));
 
         //call the processor service
         certifiedCopyProcessorService.processMessage(new KafkaServiceParameters(certifiedCopy));
@@ -59,4 +97,142 @@ public class CertifiedCopyProcessorServiceTest {
         verify(documentService).getPrivateUri(documentMetadata);
         verify(kafkaProducerService).sendMessage(certifiedCopy, privateUri, convertedFilingHistoryDescription);
     }
+
+    @Test
+    @DisplayName("processMessage() propagates the exception thrown by a failed lookup")
+    void processMessagePropagatesLookupFailure() {
+
+        // Given
+        when(filingHistoryDocumentService.getDocumentMetadata(anyString(), anyString()))
+                .thenThrow(new NonRetryableException("Test exception"));
+
+        // When
+        final var exception = assertThrows(NonRetryableException.class,
+                () -> certifiedCopyProcessorService.processMessage(new KafkaServiceParameters(CERTIFIED_COPY)));
+
+        // Then
+        assertThat(exception.getMessage(), is("Test exception"));
+        verify(documentService, never()).getPrivateUri(anyString());
+        verify(kafkaProducerService, never()).sendMessage(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("processMessageAsync() does not complete until the message sent has been acknowledged")
+    void processMessageAsyncCompletesOnlyOnceSendAcknowledged() throws URISyntaxException {
+
+        // Given
+        final var privateUri = new URI("private_uri");
+        final var acknowledgement = new CompletableFuture<SendResult<String, SignDigitalDocument>>();
+        when(filingHistoryDocumentService.getDocumentMetadata(anyString(), anyString()))
+                .thenReturn("data that is meta");
+        when(documentService.getPrivateUri("data that is meta")).thenReturn(privateUri);
+        when(filingHistoryDescriptionService.getDescription(anyString())).thenReturn("a very good description");
+        when(kafkaProducerService.sendMessage(CERTIFIED_COPY, privateUri, "a very good description"))
+                .thenReturn(acknowledgement);
+
+        // When
+        final var outcome =
+                certifiedCopyProcessorService.processMessageAsync(new KafkaServiceParameters(CERTIFIED_COPY));
+
+        // Then
+        assertThat(outcome.isDone(), is(false));
+        acknowledgement.completeExceptionally(new RetryableException("Test exception"));
+        final var exception = assertThrows(CompletionException.class, outcome::join);
+        assertThat(exception.getCause(), is(instanceOf(RetryableException.class)));
+    }
+
+    @Test
+    @DisplayName("processMessageAsync() fails retryably and sends nothing when the deadline passes")
+    void processMessageAsyncFailsRetryablyWhenDeadlineExceeded() {
+
+        // Given
+        final var executor = Executors.newSingleThreadExecutor();
+        certifiedCopyProcessorService = new CertifiedCopyProcessorService(logger, filingHistoryDocumentService,
+                documentService, kafkaProducerService, filingHistoryDescriptionService,
+                nonBlockingFilingHistoryDocumentService, nonBlockingDocumentService, executor, DEADLINE_MILLIS,
+                false);
+        when(filingHistoryDocumentService.getDocumentMetadata(anyString(), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(DEADLINE_MILLIS * 10);
+            return "data that is meta";
+        });
+
+        try {
+            // When
+            final var outcome =
+                    certifiedCopyProcessorService.processMessageAsync(new KafkaServiceParameters(CERTIFIED_COPY));
+            final var exception = assertThrows(CompletionException.class, outcome::join);
+
+            // Then
+            assertThat(exception.getCause(), is(instanceOf(RetryableException.class)));
+            assertThat(exception.getCause().getMessage(), is("Processing of certified copy ID CCD-768116-517930"
+                    + " from order ORD-152416-079544 did not complete within 200ms."));
+            verify(kafkaProducerService, never()).sendMessage(any(), any(), any());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("processMessageAsync() interrupts a lookup still running when the deadline passes")
+    void processMessageAsyncInterruptsLookupWhenDeadlineExceeded() throws InterruptedException {
+
+        // Given
+        final var executor = Executors.newSingleThreadExecutor();
+        certifiedCopyProcessorService = new CertifiedCopyProcessorService(logger, filingHistoryDocumentService,
+                documentService, kafkaProducerService, filingHistoryDescriptionService,
+                nonBlockingFilingHistoryDocumentService, nonBlockingDocumentService, executor, DEADLINE_MILLIS,
+                false);
+        final var interrupted = new CountDownLatch(1);
+        when(filingHistoryDocumentService.getDocumentMetadata(anyString(), anyString())).thenAnswer(invocation -> {
+            try {
+                Thread.sleep(DEADLINE_MILLIS * 100);
+            } catch (InterruptedException ex) {
+                interrupted.countDown();
+                throw ex;
+            }
+            return "data that is meta";
+        });
+
+        try {
+            // When
+            final var outcome =
+                    certifiedCopyProcessorService.processMessageAsync(new KafkaServiceParameters(CERTIFIED_COPY));
+            assertThrows(CompletionException.class, outcome::join);
+
+            // Then
+            assertThat(interrupted.await(DEADLINE_MILLIS * 10, TimeUnit.MILLISECONDS), is(true));
+            verify(filingHistoryDescriptionService, never()).getDescription(anyString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("processMessageAsync() looks up the document with the non-blocking services when so configured")
+    void processMessageAsyncUsesNonBlockingServicesWhenConfigured() throws URISyntaxException {
+
+        // Given
+        certifiedCopyProcessorService = new CertifiedCopyProcessorService(logger, filingHistoryDocumentService,
+                documentService, kafkaProducerService, filingHistoryDescriptionService,
+                nonBlockingFilingHistoryDocumentService, nonBlockingDocumentService, Runnable::run,
+                DEADLINE_MILLIS, true);
+        final var privateUri = new URI("private_uri");
+        when(nonBlockingFilingHistoryDocumentService.getDocumentMetadata(anyString(), anyString()))
+                .thenReturn(CompletableFuture.completedFuture("data that is meta"));
+        when(nonBlockingDocumentService.getPrivateUri("data that is meta"))
+                .thenReturn(CompletableFuture.completedFuture(privateUri));
+        when(filingHistoryDescriptionService.getDescription(anyString())).thenReturn("a very good description");
+        when(kafkaProducerService.sendMessage(CERTIFIED_COPY, privateUri, "a very good description"))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        certifiedCopyProcessorService.processMessageAsync(new KafkaServiceParameters(CERTIFIED_COPY)).join();
+
+        // Then
+        verify(nonBlockingFilingHistoryDocumentService).getDocumentMetadata(CERTIFIED_COPY.getCompanyNumber(),
+                CERTIFIED_COPY.getFilingHistoryId());
+        verify(kafkaProducerService).sendMessage(CERTIFIED_COPY, privateUri, "a very good description");
+        verify(filingHistoryDocumentService, never()).getDocumentMetadata(anyString(), anyString());
+        verify(documentService, never()).getPrivateUri(anyString());
+    }
 }
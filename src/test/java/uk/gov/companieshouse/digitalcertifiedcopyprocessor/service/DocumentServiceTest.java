@@ -1,11 +1,13 @@
 package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.http.HttpStatus;
 import uk.gov.companieshouse.api.ApiClient;
 import uk.gov.companieshouse.api.error.ApiErrorResponseException;
@@ -27,11 +29,14 @@ import java.util.Map;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.HttpHeaders.LOCATION;
 import static org.springframework.http.HttpStatus.FOUND;
 import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.UpstreamGuard.Upstream.DOCUMENT_API;
 import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.DOCUMENT_METADATA;
 import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.DOCUMENT_METADATA_WITH_HOSTNAME;
 import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.EXPECTED_PRIVATE_DOCUMENT_URI;
@@ -44,7 +49,6 @@ import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants
 @ExtendWith(MockitoExtension.class)
 class DocumentServiceTest {
 
-    @InjectMocks
     private DocumentService serviceUnderTest;
 
     @Mock
@@ -71,6 +75,15 @@ class DocumentServiceTest {
     @Mock
     private Map<String, Object> headers;
 
+    @Mock
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        serviceUnderTest = new DocumentService(apiClientService, logger, converter,
+                new PrivateUriCache(1000, meterRegistry), new UpstreamGuard(50, 20, 30000, 20, 0, 0, 0, meterRegistry),
+                new HedgingPolicy(false, 95, 5, 1000, meterRegistry));
+    }
 
     @Test
     @DisplayName("getPrivateUri() gets URI successfully")
@@ -88,6 +101,24 @@ class DocumentServiceTest {
         assertThat(privateUri, is(EXPECTED_PRIVATE_DOCUMENT_URI));
     }
 
+    @Test
+    @DisplayName("getPrivateUri() derives the URI for a document only once")
+    void getPrivateUriDerivesUriOnce() throws ApiErrorResponseException, URIValidationException {
+
+        // Given
+        givenResponseWithStatus(FOUND);
+        givenResponseContainsPublicUri(PUBLIC_DOCUMENT_URI);
+        when(converter.convertToPrivateUri(EXPECTED_PUBLIC_DOCUMENT_URI)).thenReturn(EXPECTED_PRIVATE_DOCUMENT_URI);
+
+        // When
+        serviceUnderTest.getPrivateUri(DOCUMENT_METADATA);
+        final URI privateUri = serviceUnderTest.getPrivateUri(DOCUMENT_METADATA_WITH_HOSTNAME);
+
+        // Then
+        assertThat(privateUri, is(EXPECTED_PRIVATE_DOCUMENT_URI));
+        verify(documentGet, times(1)).execute();
+    }
+
     @Test
     @DisplayName("getPublicUri() gets URI successfully")
     void getPublicUriGetsUriSuccessfully() throws ApiErrorResponseException, URIValidationException {
@@ -124,7 +155,7 @@ class DocumentServiceTest {
 
         // Given
         var underlyingError = "Environment variable missing: DOCUMENT_API_LOCAL_URL";
-        when(apiClientService.getApiClient()).thenThrow(new RuntimeException(underlyingError));
+        when(apiClientService.getApiClient(DOCUMENT_API)).thenThrow(new RuntimeException(underlyingError));
 
         // When
         final NonRetryableException exception =
@@ -245,7 +276,7 @@ class DocumentServiceTest {
 
     private void givenRequestExecutionException(final Exception exception)
             throws ApiErrorResponseException, URIValidationException {
-        when(apiClientService.getApiClient()).thenReturn(apiClient);
+        when(apiClientService.getApiClient(DOCUMENT_API)).thenReturn(apiClient);
         when(apiClient.document()).thenReturn(documentResourceHandler);
         when(documentResourceHandler.getDocument(DOCUMENT_METADATA + "/content")).thenReturn(documentGet);
         when(documentGet.execute()).thenThrow(exception);
@@ -253,7 +284,7 @@ class DocumentServiceTest {
 
     private void givenResponseWithStatus(final HttpStatus status)
             throws ApiErrorResponseException, URIValidationException {
-        when(apiClientService.getApiClient()).thenReturn(apiClient);
+        when(apiClientService.getApiClient(DOCUMENT_API)).thenReturn(apiClient);
         when(apiClient.document()).thenReturn(documentResourceHandler);
         when(documentResourceHandler.getDocument(DOCUMENT_METADATA + "/content")).thenReturn(documentGet);
         when(documentGet.execute()).thenReturn(response);
@@ -0,0 +1,146 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.FilingHistoryDocumentNotFoundException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.FilingHistoryDocumentCache.CACHE_NAME;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.FilingHistoryDocumentCache.NOT_FOUND_CACHE_NAME;
+
+/**
+ * Unit tests the {@link FilingHistoryDocumentCache} class.
+ */
+class FilingHistoryDocumentCacheTest {
+
+    private static final String COMPANY_NUMBER = "00006400";
+    private static final String FILING_HISTORY_ID = "MDAxMTEyNzExOGFkaXF6a2N4";
+    private static final String DOCUMENT_METADATA = "/document/specimen";
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("get() looks up a filing history document once, then serves it from the cache")
+    void getLooksUpOnce() {
+
+        // Given
+        final var cacheUnderTest = cache(1000);
+        final var lookups = new AtomicInteger();
+
+        // When
+        cacheUnderTest.get(COMPANY_NUMBER, FILING_HISTORY_ID, () -> lookUp(lookups));
+        final var metadata = cacheUnderTest.get(COMPANY_NUMBER, FILING_HISTORY_ID, () -> lookUp(lookups));
+
+        // Then
+        assertThat(metadata, is(DOCUMENT_METADATA));
+        assertThat(lookups.get(), is(1));
+        assertThat(registry.get("cache.gets").tag("cache", CACHE_NAME).tag("result", "hit")
+                .functionCounter().count(), is(1.0));
+        assertThat(registry.get("cache.gets").tag("cache", CACHE_NAME).tag("result", "miss")
+                .functionCounter().count(), is(1.0));
+    }
+
+    @Test
+    @DisplayName("get() holds nothing for a failed lookup")
+    void getDoesNotHoldFailures() {
+
+        // Given
+        final var cacheUnderTest = cache(1000);
+        final var lookups = new AtomicInteger();
+
+        // When
+        assertThrows(IllegalStateException.class, () -> cacheUnderTest.get(COMPANY_NUMBER, FILING_HISTORY_ID, () -> {
+            throw new IllegalStateException("Lookup failed");
+        }));
+        cacheUnderTest.get(COMPANY_NUMBER, FILING_HISTORY_ID, () -> lookUp(lookups));
+
+        // Then
+        assertThat(lookups.get(), is(1));
+    }
+
+    @Test
+    @DisplayName("get() fails straight away for a filing history document recently found not to exist")
+    void getHoldsNotFound() {
+
+        // Given
+        final var cacheUnderTest = cache(1000);
+        final var lookups = new AtomicInteger();
+
+        // When
+        assertThrows(FilingHistoryDocumentNotFoundException.class,
+                () -> cacheUnderTest.get(COMPANY_NUMBER, FILING_HISTORY_ID, () -> {
+                    lookups.incrementAndGet();
+                    throw new FilingHistoryDocumentNotFoundException("Not found");
+                }));
+        final var exception = assertThrows(FilingHistoryDocumentNotFoundException.class,
+                () -> cacheUnderTest.get(COMPANY_NUMBER, FILING_HISTORY_ID, () -> lookUp(lookups)));
+
+        // Then
+        assertThat(exception.getMessage(), is("Not found"));
+        assertThat(lookups.get(), is(1));
+        assertThat(registry.get("cache.gets").tag("cache", NOT_FOUND_CACHE_NAME).tag("result", "hit")
+                .functionCounter().count(), is(1.0));
+    }
+
+    @Test
+    @DisplayName("get() evicts entries to keep the cache within its maximum weight")
+    void getEvictsToMaximumWeight() {
+
+        // Given
+        final var entryWeight = COMPANY_NUMBER.length() + FILING_HISTORY_ID.length() + DOCUMENT_METADATA.length();
+        final var cacheUnderTest = cache(entryWeight);
+        final var lookups = new AtomicInteger();
+
+        // When
+        cacheUnderTest.get(COMPANY_NUMBER, FILING_HISTORY_ID, () -> lookUp(lookups));
+        cacheUnderTest.get("00006401", FILING_HISTORY_ID, () -> lookUp(lookups));
+        cacheUnderTest.cleanUp();
+
+        // Then
+        assertThat(registry.get("cache.evictions").tag("cache", CACHE_NAME).functionCounter().count(), is(1.0));
+    }
+
+    @Test
+    @DisplayName("get() evicts filing history documents not found to keep within the maximum number held")
+    void getEvictsNotFoundToMaximumSize() {
+
+        // Given
+        final var cacheUnderTest = cache(1000, 1);
+
+        // When
+        for (final var companyNumber : List.of(COMPANY_NUMBER, "00006401")) {
+            assertThrows(FilingHistoryDocumentNotFoundException.class,
+                    () -> cacheUnderTest.get(companyNumber, FILING_HISTORY_ID, () -> {
+                        throw new FilingHistoryDocumentNotFoundException("Not found");
+                    }));
+        }
+        cacheUnderTest.cleanUp();
+
+        // Then
+        assertThat(registry.get("cache.evictions").tag("cache", NOT_FOUND_CACHE_NAME).functionCounter().count(),
+                is(1.0));
+    }
+
+    private FilingHistoryDocumentCache cache(final long maxWeight) {
+        return cache(maxWeight, 1000);
+    }
+
+    private FilingHistoryDocumentCache cache(final long maxWeight, final long notFoundMaxSize) {
+        return new FilingHistoryDocumentCache(maxWeight, 60000, notFoundMaxSize, 60000,
+                new StaticListableBeanFactory(Map.of("meterRegistry", registry)).getBeanProvider(MeterRegistry.class));
+    }
+
+    private static String lookUp(final AtomicInteger lookups) {
+        lookups.incrementAndGet();
+        return DOCUMENT_METADATA;
+    }
+}
@@ -111,6 +111,9 @@ class FilingHistoryDocumentServiceIntegrationTest {
     @Autowired
     private FilingHistoryDocumentService serviceUnderTest;
 
+    @Autowired
+    private FilingHistoryDocumentCache cache;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -124,6 +127,7 @@ class FilingHistoryDocumentServiceIntegrationTest {
                         .map(Enum::name)
                         .toArray(String[]::new);
         environmentVariables.clear(AllEnvironmentVariableNames);
+        cache.clear();
     }
 
     @Test
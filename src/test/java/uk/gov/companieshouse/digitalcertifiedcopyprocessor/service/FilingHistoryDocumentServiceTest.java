@@ -3,17 +3,23 @@ package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
 import com.google.api.client.http.HttpHeaders;
 import com.google.api.client.http.HttpResponse;
 import com.google.api.client.http.HttpResponseException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
 import uk.gov.companieshouse.api.InternalApiClient;
 import uk.gov.companieshouse.api.error.ApiErrorResponseException;
 import uk.gov.companieshouse.api.handler.exception.URIValidationException;
 import uk.gov.companieshouse.api.handler.filinghistory.FilingResourceHandler;
 import uk.gov.companieshouse.api.handler.filinghistory.request.FilingGet;
+import uk.gov.companieshouse.api.model.ApiResponse;
+import uk.gov.companieshouse.api.model.filinghistory.FilingApi;
+import uk.gov.companieshouse.api.model.filinghistory.FilingLinks;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.FilingHistoryDocumentNotFoundException;
 import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.NonRetryableException;
 import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
 import uk.gov.companieshouse.logging.Logger;
@@ -24,9 +30,12 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.gov.companieshouse.api.error.ApiErrorResponseException.fromHttpResponseException;
 import static uk.gov.companieshouse.api.error.ApiErrorResponseException.fromIOException;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.UpstreamGuard.Upstream.FILING_HISTORY_API;
 
 /**
  * Unit tests the {@link FilingHistoryDocumentService} class.
@@ -48,8 +57,8 @@ class FilingHistoryDocumentServiceTest {
             + COMPANY_NUMBER + ": 404 Not Found";
 
     private static final String FILING_SOUGHT = "1";
+    private static final String DOCUMENT_METADATA = "/document/specimen";
 
-    @InjectMocks
     private FilingHistoryDocumentService serviceUnderTest;
 
     @Mock
@@ -67,6 +76,51 @@ class FilingHistoryDocumentServiceTest {
     @Mock
     private FilingGet filingGet;
 
+    @Mock
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        serviceUnderTest = new FilingHistoryDocumentService(apiClientService, logger,
+                new FilingHistoryDocumentCache(1000, 60000, 1000, 60000, meterRegistry),
+                new UpstreamGuard(50, 20, 30000, 20, 0, 0, 0, meterRegistry));
+    }
+
+    @Test
+    @DisplayName("getDocumentMetadata() looks up the metadata of a filing only once")
+    void getDocumentMetadataLooksUpFilingOnce() throws Exception {
+
+        // Given
+        setUpForFilingApiResponse();
+
+        // When
+        final var first = serviceUnderTest.getDocumentMetadata(COMPANY_NUMBER, FILING_SOUGHT);
+        final var second = serviceUnderTest.getDocumentMetadata(COMPANY_NUMBER, FILING_SOUGHT);
+
+        // Then
+        assertThat(first, is(DOCUMENT_METADATA));
+        assertThat(second, is(DOCUMENT_METADATA));
+        verify(filingGet, times(1)).execute();
+    }
+
+    @Test
+    @DisplayName("getDocumentMetadata() looks up the metadata of a filing again after a failed lookup")
+    void getDocumentMetadataDoesNotCacheFailures() throws Exception {
+
+        // Given
+        setUpForFilingApiException(fromIOException(new IOException(IOEXCEPTION_MESSAGE)));
+        when(internalApiClient.getBasePath()).thenReturn("http://host");
+
+        // When
+        assertThrows(RetryableException.class,
+                () -> serviceUnderTest.getDocumentMetadata(COMPANY_NUMBER, FILING_SOUGHT));
+        assertThrows(RetryableException.class,
+                () -> serviceUnderTest.getDocumentMetadata(COMPANY_NUMBER, FILING_SOUGHT));
+
+        // Then
+        verify(filingGet, times(2)).execute();
+    }
+
     @Test
     @DisplayName("getDocumentMetadata() propagates a URIValidationException wrapped as a NonRetryableException")
     void getDocumentMetadataErrorsNonRetryablyForUriValidationException() throws Exception  {
@@ -95,8 +149,8 @@ class FilingHistoryDocumentServiceTest {
     }
 
     @Test
-    @DisplayName("getDocumentMetadata() reports a Not Found response as a RetryableException")
-    void nonServerInternalErrorReportedAsRetryableException() throws Exception {
+    @DisplayName("getDocumentMetadata() reports a Not Found response as a FilingHistoryDocumentNotFoundException")
+    void notFoundReportedAsFilingHistoryDocumentNotFoundException() throws Exception {
 
         // Given
         final var httpResponse = mock(HttpResponse.class);
@@ -109,9 +163,27 @@ class FilingHistoryDocumentServiceTest {
         setUpForFilingApiException(ex);
 
         // When and then
-        final RetryableException exception = assertThrows(RetryableException.class,
+        final var exception = assertThrows(FilingHistoryDocumentNotFoundException.class,
                 () -> serviceUnderTest.getDocumentMetadata(COMPANY_NUMBER, FILING_SOUGHT));
         assertThat(exception.getMessage(), is(NOT_FOUND_EXPECTED_REASON));
+        final var repeated = assertThrows(FilingHistoryDocumentNotFoundException.class,
+                () -> serviceUnderTest.getDocumentMetadata(COMPANY_NUMBER, FILING_SOUGHT));
+        assertThat(repeated.getMessage(), is(NOT_FOUND_EXPECTED_REASON));
+        verify(filingGet, times(1)).execute();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void setUpForFilingApiResponse() throws ApiErrorResponseException, URIValidationException {
+        final var links = new FilingLinks();
+        links.setDocumentMetaData(DOCUMENT_METADATA);
+        final var filing = new FilingApi();
+        filing.setLinks(links);
+        final ApiResponse<FilingApi> response = mock(ApiResponse.class);
+        when(response.getData()).thenReturn(filing);
+        when(apiClientService.getInternalApiClient(FILING_HISTORY_API)).thenReturn(internalApiClient);
+        when(internalApiClient.filing()).thenReturn(resourceHandler);
+        when(resourceHandler.get("/company/00006400/filing-history/1")).thenReturn(filingGet);
+        when(filingGet.execute()).thenReturn(response);
     }
 
     /**
@@ -123,7 +195,7 @@ class FilingHistoryDocumentServiceTest {
      */
     private void setUpForFilingApiException(final Exception exceptionToThrow)
             throws ApiErrorResponseException, URIValidationException {
-        when(apiClientService.getInternalApiClient()).thenReturn(internalApiClient);
+        when(apiClientService.getInternalApiClient(FILING_HISTORY_API)).thenReturn(internalApiClient);
         when(internalApiClient.filing()).thenReturn(resourceHandler);
         when(resourceHandler.get("/company/00006400/filing-history/1")).thenReturn(filingGet);
         when(filingGet.execute()).thenThrow(exceptionToThrow);
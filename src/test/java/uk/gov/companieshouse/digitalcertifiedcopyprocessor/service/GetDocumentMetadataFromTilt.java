@@ -34,6 +34,9 @@ import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.TestUtils
  */
 @SpringBootTest
 @SpringJUnitConfig({FilingHistoryDocumentService.class,
+                    FilingHistoryDocumentCache.class,
+                    UpstreamGuard.class,
+                    AdaptiveTimeouts.class,
                     TestConfig.class,
                     ApiClientService.class,
                     ApplicationConfiguration.class})
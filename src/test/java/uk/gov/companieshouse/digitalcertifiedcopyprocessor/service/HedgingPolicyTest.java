@@ -0,0 +1,248 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests the {@link HedgingPolicy} class.
+ */
+class HedgingPolicyTest {
+
+    private static final int WINDOW_SIZE = 10;
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private HedgingPolicy policyUnderTest;
+
+    @AfterEach
+    void tearDown() {
+        if (policyUnderTest != null) {
+            policyUnderTest.close();
+        }
+    }
+
+    @Test
+    @DisplayName("callAsync() makes only the one attempt when disabled")
+    void callAsyncDoesNotHedgeWhenDisabled() {
+
+        // Given
+        policyUnderTest = policy(false, 100);
+        final var attempts = new AtomicInteger();
+
+        // When
+        final var result = policyUnderTest.callAsync(() -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.completedFuture("result");
+        });
+
+        // Then
+        assertThat(result.join(), is("result"));
+        assertThat(attempts.get(), is(1));
+    }
+
+    @Test
+    @DisplayName("callAsync() does not hedge until enough latencies have been recorded")
+    void callAsyncDoesNotHedgeWithoutLatencies() throws InterruptedException {
+
+        // Given
+        policyUnderTest = policy(true, 100);
+        final var attempts = new AtomicInteger();
+
+        // When
+        final var result = policyUnderTest.callAsync(() -> {
+            attempts.incrementAndGet();
+            return new CompletableFuture<String>();
+        });
+        Thread.sleep(50);
+
+        // Then
+        assertThat(result.isDone(), is(false));
+        assertThat(attempts.get(), is(1));
+    }
+
+    @Test
+    @DisplayName("callAsync() uses the result of the hedged attempt should the first be slow to answer")
+    void callAsyncUsesHedgedAttemptWhenFirstSlow() {
+
+        // Given
+        policyUnderTest = policy(true, 100);
+        recordLatencies();
+        final List<CompletableFuture<String>> attempts = new CopyOnWriteArrayList<>();
+
+        // When
+        final var result = policyUnderTest.callAsync(() -> {
+            final var attempt = attempts.isEmpty()
+                    ? new CompletableFuture<String>()
+                    : CompletableFuture.completedFuture("hedged");
+            attempts.add(attempt);
+            return attempt;
+        });
+
+        // Then
+        assertThat(result.join(), is("hedged"));
+        assertThat(attempts.size(), is(2));
+        assertThat(registry.get("document.content.hedged.requests").functionCounter().count(), is(1.0));
+    }
+
+    @Test
+    @DisplayName("callAsync() does not hedge beyond its budget")
+    void callAsyncKeepsWithinBudget() throws InterruptedException {
+
+        // Given
+        policyUnderTest = policy(true, 10);
+        recordLatencies();
+        final var attempts = new AtomicInteger();
+
+        // When
+        policyUnderTest.callAsync(() -> {
+            attempts.incrementAndGet();
+            return new CompletableFuture<String>();
+        });
+        policyUnderTest.callAsync(() -> {
+            attempts.incrementAndGet();
+            return new CompletableFuture<String>();
+        });
+        Thread.sleep(50);
+
+        // Then
+        assertThat(attempts.get(), is(3));
+    }
+
+    @Test
+    @DisplayName("callAsync() fails only once every attempt has failed")
+    void callAsyncFailsOnceEveryAttemptFailed() {
+
+        // Given
+        policyUnderTest = policy(true, 100);
+        recordLatencies();
+        final var first = new CompletableFuture<String>();
+        final var attempts = new AtomicInteger();
+
+        // When
+        final var result = policyUnderTest.callAsync(() -> attempts.incrementAndGet() == 1
+                ? first
+                : CompletableFuture.failedFuture(new RetryableException("Hedged attempt failed")));
+        while (attempts.get() < 2) {
+            Thread.onSpinWait();
+        }
+        first.completeExceptionally(new RetryableException("First attempt failed"));
+
+        // Then
+        final var exception = assertThrows(CompletionException.class, result::join);
+        assertThat(exception.getCause(), is(instanceOf(RetryableException.class)));
+        assertThat(exception.getCause().getMessage(), is("First attempt failed"));
+    }
+
+    @Test
+    @DisplayName("call() rethrows the exception thrown by the last attempt as is")
+    void callRethrowsException() {
+
+        // Given
+        policyUnderTest = policy(true, 100);
+
+        // When
+        final var exception = assertThrows(RetryableException.class, () -> policyUnderTest.call(() -> {
+            throw new RetryableException("Attempt failed");
+        }));
+
+        // Then
+        assertThat(exception.getMessage(), is("Attempt failed"));
+    }
+
+    @Test
+    @DisplayName("call() interrupts the slower attempt once the other has answered")
+    void callInterruptsSlowerAttempt() throws InterruptedException {
+
+        // Given
+        policyUnderTest = policy(true, 100);
+        recordLatencies();
+        final var attempts = new AtomicInteger();
+        final var interrupted = new CountDownLatch(1);
+
+        // When
+        final var result = policyUnderTest.call(() -> {
+            if (attempts.incrementAndGet() > 1) {
+                return "hedged";
+            }
+            return block(interrupted);
+        });
+
+        // Then
+        assertThat(result, is("hedged"));
+        assertThat(interrupted.await(5, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    @DisplayName("call() gives up, interrupting its attempt, should the calling thread be interrupted")
+    void callGivesUpWhenInterrupted() throws InterruptedException {
+
+        // Given
+        policyUnderTest = policy(true, 100);
+        final var started = new CountDownLatch(1);
+        final var interrupted = new CountDownLatch(1);
+        final var failure = new AtomicReference<Throwable>();
+        final var caller = Thread.ofVirtual().start(() -> {
+            try {
+                policyUnderTest.call(() -> {
+                    started.countDown();
+                    return block(interrupted);
+                });
+            } catch (RuntimeException ex) {
+                failure.set(ex);
+            }
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS), is(true));
+
+        // When
+        caller.interrupt();
+        caller.join(5000);
+
+        // Then
+        assertThat(failure.get(), is(instanceOf(RetryableException.class)));
+        assertThat(failure.get().getMessage(), is("Interrupted waiting for document content request."));
+        assertThat(interrupted.await(5, TimeUnit.SECONDS), is(true));
+    }
+
+    /**
+     * Blocks until interrupted, as an attempt awaiting a request that never answers would.
+     */
+    private static String block(final CountDownLatch interrupted) {
+        try {
+            new CountDownLatch(1).await();
+        } catch (InterruptedException ex) {
+            interrupted.countDown();
+        }
+        throw new RetryableException("Attempt interrupted");
+    }
+
+    private HedgingPolicy policy(final boolean enabled, final int budgetPercent) {
+        return new HedgingPolicy(enabled, 50, budgetPercent, WINDOW_SIZE,
+                new StaticListableBeanFactory(Map.of("meterRegistry", registry)).getBeanProvider(MeterRegistry.class));
+    }
+
+    private void recordLatencies() {
+        for (int call = 0; call < WINDOW_SIZE; call++) {
+            policyUnderTest.callAsync(() -> CompletableFuture.completedFuture("result")).join();
+        }
+    }
+}
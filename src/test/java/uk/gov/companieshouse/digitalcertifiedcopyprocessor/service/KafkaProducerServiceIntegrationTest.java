@@ -22,7 +22,6 @@ import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
 import uk.gov.companieshouse.digitalcertifiedcopyprocessor.config.KafkaConfig;
-import uk.gov.companieshouse.digitalcertifiedcopyprocessor.consumer.MessageFlags;
 import uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka.SignDigitalDocumentFactory;
 import uk.gov.companieshouse.documentsigning.CoverSheetDataRecord;
 import uk.gov.companieshouse.documentsigning.SignDigitalDocument;
@@ -85,9 +84,6 @@ class KafkaProducerServiceIntegrationTest {
     @MockitoBean
     private Logger logger;
 
-    @MockitoBean
-    MessageFlags messageFlags;
-
     private final CountDownLatch messageReceivedLatch = new CountDownLatch(1);
     private SignDigitalDocument messageReceived;
 
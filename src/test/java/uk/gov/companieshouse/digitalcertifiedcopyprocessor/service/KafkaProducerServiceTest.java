@@ -0,0 +1,148 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.kafka.SignDigitalDocumentFactory;
+import uk.gov.companieshouse.documentsigning.SignDigitalDocument;
+import uk.gov.companieshouse.logging.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.CERTIFIED_COPY;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.PRIVATE_DOCUMENT_URI;
+
+/**
+ * Unit tests the {@link KafkaProducerService} class.
+ */
+@ExtendWith(MockitoExtension.class)
+class KafkaProducerServiceTest {
+
+    private static final String SIGN_DIGITAL_DOCUMENT_TOPIC = "sign-digital-document";
+    private static final String FILING_HISTORY_DESCRIPTION = "a very good description";
+    private static final SignDigitalDocument MESSAGE = new SignDigitalDocument();
+    private static final SendResult<String, SignDigitalDocument> SEND_RESULT = new SendResult<>(
+            new ProducerRecord<>(SIGN_DIGITAL_DOCUMENT_TOPIC, MESSAGE),
+            new RecordMetadata(new TopicPartition(SIGN_DIGITAL_DOCUMENT_TOPIC, 0), 0L, 0, 0L, 0, 0));
+
+    @Mock
+    private KafkaTemplate<String, SignDigitalDocument> kafkaTemplate;
+
+    @Mock
+    private Logger logger;
+
+    @Mock
+    private SignDigitalDocumentFactory signDigitalDocumentFactory;
+
+    private KafkaProducerService serviceUnderTest;
+
+    @BeforeEach
+    void setUp() {
+        serviceUnderTest = new KafkaProducerService(kafkaTemplate, logger, signDigitalDocumentFactory,
+                SIGN_DIGITAL_DOCUMENT_TOPIC, 1, 1);
+        when(signDigitalDocumentFactory.buildMessage(any(), any(), any())).thenReturn(MESSAGE);
+    }
+
+    @Test
+    @DisplayName("sendMessage() re-drives a send that failed with a transient error")
+    void sendMessageRedrivesTransientFailure() {
+
+        // Given
+        when(kafkaTemplate.send(SIGN_DIGITAL_DOCUMENT_TOPIC, MESSAGE))
+                .thenReturn(CompletableFuture.failedFuture(new TimeoutException("Test exception")))
+                .thenReturn(CompletableFuture.completedFuture(SEND_RESULT));
+
+        // When
+        final var result = serviceUnderTest.sendMessage(CERTIFIED_COPY, PRIVATE_DOCUMENT_URI,
+                FILING_HISTORY_DESCRIPTION).join();
+
+        // Then
+        assertThat(result, is(SEND_RESULT));
+        verify(kafkaTemplate, times(2)).send(SIGN_DIGITAL_DOCUMENT_TOPIC, MESSAGE);
+    }
+
+    @Test
+    @DisplayName("sendMessage() fails retryably without re-driving a send that failed with a permanent error")
+    void sendMessageDoesNotRedrivePermanentFailure() {
+
+        // Given
+        when(kafkaTemplate.send(SIGN_DIGITAL_DOCUMENT_TOPIC, MESSAGE))
+                .thenReturn(CompletableFuture.failedFuture(new RecordTooLargeException("Test exception")));
+
+        // When
+        final var outcome = serviceUnderTest.sendMessage(CERTIFIED_COPY, PRIVATE_DOCUMENT_URI,
+                FILING_HISTORY_DESCRIPTION);
+
+        // Then
+        final var exception = assertThrows(CompletionException.class, outcome::join);
+        assertThat(exception.getCause(), is(instanceOf(RetryableException.class)));
+        verify(kafkaTemplate).send(SIGN_DIGITAL_DOCUMENT_TOPIC, MESSAGE);
+    }
+
+    @Test
+    @DisplayName("sendMessage() holds a send beyond the send window until an earlier send is acknowledged")
+    void sendMessageHoldsSendBeyondWindow() {
+
+        // Given
+        final var firstAcknowledgement = new CompletableFuture<SendResult<String, SignDigitalDocument>>();
+        when(kafkaTemplate.send(SIGN_DIGITAL_DOCUMENT_TOPIC, MESSAGE))
+                .thenReturn(firstAcknowledgement)
+                .thenReturn(CompletableFuture.completedFuture(SEND_RESULT));
+        serviceUnderTest.sendMessage(CERTIFIED_COPY, PRIVATE_DOCUMENT_URI, FILING_HISTORY_DESCRIPTION);
+
+        // When
+        final var second = CompletableFuture.supplyAsync(() ->
+                serviceUnderTest.sendMessage(CERTIFIED_COPY, PRIVATE_DOCUMENT_URI, FILING_HISTORY_DESCRIPTION).join());
+
+        // Then
+        verify(kafkaTemplate, after(200L).times(1)).send(SIGN_DIGITAL_DOCUMENT_TOPIC, MESSAGE);
+        firstAcknowledgement.complete(SEND_RESULT);
+        verify(kafkaTemplate, timeout(1000L).times(2)).send(SIGN_DIGITAL_DOCUMENT_TOPIC, MESSAGE);
+        assertThat(second.join(), is(SEND_RESULT));
+    }
+
+    @Test
+    @DisplayName("sendMessage() queues a send beyond the send window without holding up the caller")
+    void sendMessageQueuesSendBeyondWindow() {
+
+        // Given
+        final var firstAcknowledgement = new CompletableFuture<SendResult<String, SignDigitalDocument>>();
+        when(kafkaTemplate.send(SIGN_DIGITAL_DOCUMENT_TOPIC, MESSAGE))
+                .thenReturn(firstAcknowledgement)
+                .thenReturn(CompletableFuture.completedFuture(SEND_RESULT));
+        serviceUnderTest.sendMessage(CERTIFIED_COPY, PRIVATE_DOCUMENT_URI, FILING_HISTORY_DESCRIPTION);
+
+        // When
+        final var second = serviceUnderTest.sendMessage(CERTIFIED_COPY, PRIVATE_DOCUMENT_URI,
+                FILING_HISTORY_DESCRIPTION);
+
+        // Then
+        assertThat(second.isDone(), is(false));
+        verify(kafkaTemplate, times(1)).send(SIGN_DIGITAL_DOCUMENT_TOPIC, MESSAGE);
+        firstAcknowledgement.complete(SEND_RESULT);
+        assertThat(second.join(), is(SEND_RESULT));
+        verify(kafkaTemplate, times(2)).send(SIGN_DIGITAL_DOCUMENT_TOPIC, MESSAGE);
+    }
+}
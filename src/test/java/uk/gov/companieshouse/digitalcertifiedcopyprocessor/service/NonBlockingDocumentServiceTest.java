@@ -0,0 +1,181 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.converter.PublicToPrivateUriConverter;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.NonRetryableException;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
+import uk.gov.companieshouse.logging.Logger;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpHeaders.LOCATION;
+import static org.springframework.http.HttpStatus.FOUND;
+import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.UpstreamGuard.Upstream.DOCUMENT_API;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.DOCUMENT_METADATA;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.DOCUMENT_METADATA_WITH_HOSTNAME;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.EXPECTED_PRIVATE_DOCUMENT_URI;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.EXPECTED_PUBLIC_DOCUMENT_URI;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.util.Constants.PUBLIC_DOCUMENT_URI;
+
+/**
+ * Unit tests the {@link NonBlockingDocumentService} class.
+ */
+@ExtendWith(MockitoExtension.class)
+class NonBlockingDocumentServiceTest {
+
+    private NonBlockingDocumentService serviceUnderTest;
+
+    @Mock
+    private ApiClientService apiClientService;
+
+    @Mock
+    private Logger logger;
+
+    @Mock
+    private PublicToPrivateUriConverter converter;
+
+    @Mock
+    private HttpClient httpClient;
+
+    @Mock
+    private HttpResponse<Void> response;
+
+    @Mock
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        serviceUnderTest = new NonBlockingDocumentService(apiClientService, logger, converter,
+                new PrivateUriCache(1000, meterRegistry), new UpstreamGuard(50, 20, 30000, 20, 0, 0, 0, meterRegistry),
+                new HedgingPolicy(false, 95, 5, 1000, meterRegistry));
+    }
+
+    @Test
+    @DisplayName("getPrivateUri() gets URI successfully")
+    void getPrivateUriGetsUriSuccessfully() {
+
+        // Given
+        givenResponse(FOUND.value(), Map.of(LOCATION, List.of(PUBLIC_DOCUMENT_URI)));
+        when(converter.convertToPrivateUri(EXPECTED_PUBLIC_DOCUMENT_URI)).thenReturn(EXPECTED_PRIVATE_DOCUMENT_URI);
+
+        // When
+        final URI privateUri = serviceUnderTest.getPrivateUri(DOCUMENT_METADATA).join();
+
+        // Then
+        assertThat(privateUri, is(EXPECTED_PRIVATE_DOCUMENT_URI));
+        verify(apiClientService).newAsyncRequest(DOCUMENT_API, DOCUMENT_METADATA + "/content");
+    }
+
+    @Test
+    @DisplayName("getPrivateUri() derives the URI for a document only once")
+    void getPrivateUriDerivesUriOnce() {
+
+        // Given
+        givenResponse(FOUND.value(), Map.of(LOCATION, List.of(PUBLIC_DOCUMENT_URI)));
+        when(converter.convertToPrivateUri(EXPECTED_PUBLIC_DOCUMENT_URI)).thenReturn(EXPECTED_PRIVATE_DOCUMENT_URI);
+
+        // When
+        serviceUnderTest.getPrivateUri(DOCUMENT_METADATA).join();
+        final URI privateUri = serviceUnderTest.getPrivateUri(DOCUMENT_METADATA_WITH_HOSTNAME).join();
+
+        // Then
+        assertThat(privateUri, is(EXPECTED_PRIVATE_DOCUMENT_URI));
+        verify(httpClient, times(1)).sendAsync(any(HttpRequest.class), any());
+        verify(converter, times(1)).convertToPrivateUri(EXPECTED_PUBLIC_DOCUMENT_URI);
+    }
+
+    @Test
+    @DisplayName("getPublicUri() reports an unexpected response status as a RetryableException")
+    void getPublicUriReportsUnexpectedStatusAsRetryableException() {
+
+        // Given
+        givenResponse(INTERNAL_SERVER_ERROR.value(), Map.of());
+
+        // When
+        final var exception = assertThrows(CompletionException.class,
+                () -> serviceUnderTest.getPublicUri(DOCUMENT_METADATA).join());
+
+        // Then
+        assertThat(exception.getCause(), is(instanceOf(RetryableException.class)));
+        assertThat(exception.getCause().getMessage(), is("Received unexpected response status code 500 getting"
+                + " public URI using document content request " + DOCUMENT_METADATA + "/content."));
+    }
+
+    @Test
+    @DisplayName("getPublicUri() reports a missing Location header as a NonRetryableException")
+    void getPublicUriReportsMissingLocationAsNonRetryableException() {
+
+        // Given
+        givenResponse(FOUND.value(), Map.of());
+
+        // When
+        final var exception = assertThrows(CompletionException.class,
+                () -> serviceUnderTest.getPublicUri(DOCUMENT_METADATA).join());
+
+        // Then
+        assertThat(exception.getCause(), is(instanceOf(NonRetryableException.class)));
+        assertThat(exception.getCause().getMessage(), is("No locations found in response from document API."));
+    }
+
+    @Test
+    @DisplayName("getPublicUri() reports a failure to send the request as a RetryableException")
+    void getPublicUriReportsSendFailureAsRetryableException() {
+
+        // Given
+        givenRequest();
+        when(httpClient.<Void>sendAsync(any(HttpRequest.class), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("Test exception")));
+
+        // When
+        final var exception = assertThrows(CompletionException.class,
+                () -> serviceUnderTest.getPublicUri(DOCUMENT_METADATA).join());
+
+        // Then
+        assertThat(exception.getCause(), is(instanceOf(RetryableException.class)));
+        assertThat(exception.getCause().getMessage(), is("Caught IOException with message 'Test exception'"
+                + " getting public URI using document content request " + DOCUMENT_METADATA + "/content."));
+    }
+
+    private void givenRequest() {
+        when(apiClientService.newAsyncRequest(eq(DOCUMENT_API), anyString())).thenAnswer(invocation ->
+                HttpRequest.newBuilder(URI.create("http://localhost" + invocation.getArgument(1))));
+        when(apiClientService.getAsyncHttpClient()).thenReturn(httpClient);
+    }
+
+    private void givenResponse(final int status, final Map<String, List<String>> headers) {
+        givenRequest();
+        when(httpClient.<Void>sendAsync(any(HttpRequest.class), any()))
+                .thenReturn(CompletableFuture.completedFuture(response));
+        when(response.statusCode()).thenReturn(status);
+        if (status == FOUND.value()) {
+            when(response.headers()).thenReturn(HttpHeaders.of(headers, (name, value) -> true));
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.FilingHistoryDocumentNotFoundException;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
+import uk.gov.companieshouse.logging.Logger;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.UpstreamGuard.Upstream.FILING_HISTORY_API;
+
+/**
+ * Unit tests the {@link NonBlockingFilingHistoryDocumentService} class.
+ */
+@ExtendWith(MockitoExtension.class)
+class NonBlockingFilingHistoryDocumentServiceTest {
+
+    private static final String COMPANY_NUMBER = "00006400";
+    private static final String FILING_SOUGHT = "1";
+    private static final String DOCUMENT_METADATA = "/document/specimen";
+    private static final String FILING_URI = "/company/00006400/filing-history/1";
+
+    private static final String FILING =
+            "{\"transaction_id\":\"1\",\"links\":{\"document_metadata\":\"" + DOCUMENT_METADATA + "\"}}";
+
+    private NonBlockingFilingHistoryDocumentService serviceUnderTest;
+
+    @Mock
+    private ApiClientService apiClientService;
+
+    @Mock
+    private Logger logger;
+
+    @Mock
+    private HttpClient httpClient;
+
+    @Mock
+    private HttpResponse<byte[]> response;
+
+    @Mock
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        serviceUnderTest = new NonBlockingFilingHistoryDocumentService(apiClientService, logger,
+                new FilingHistoryDocumentCache(1000, 60000, 1000, 60000, meterRegistry),
+                new UpstreamGuard(50, 20, 30000, 20, 0, 0, 0, meterRegistry));
+    }
+
+    @Test
+    @DisplayName("getDocumentMetadata() gets the document metadata link from the filing")
+    void getDocumentMetadataGetsLinkSuccessfully() {
+
+        // Given
+        givenResponse(200, FILING);
+
+        // When
+        final var metadata = serviceUnderTest.getDocumentMetadata(COMPANY_NUMBER, FILING_SOUGHT).join();
+
+        // Then
+        assertThat(metadata, is(DOCUMENT_METADATA));
+        verify(apiClientService).newAsyncRequest(FILING_HISTORY_API, FILING_URI);
+    }
+
+    @Test
+    @DisplayName("getDocumentMetadata() looks up the document metadata for a filing only once")
+    void getDocumentMetadataLooksUpOnce() {
+
+        // Given
+        givenResponse(200, FILING);
+
+        // When
+        serviceUnderTest.getDocumentMetadata(COMPANY_NUMBER, FILING_SOUGHT).join();
+        final var metadata = serviceUnderTest.getDocumentMetadata(COMPANY_NUMBER, FILING_SOUGHT).join();
+
+        // Then
+        assertThat(metadata, is(DOCUMENT_METADATA));
+        verify(httpClient, times(1)).sendAsync(any(HttpRequest.class), any());
+    }
+
+    @Test
+    @DisplayName("getDocumentMetadata() reports a server error as a RetryableException")
+    void serverErrorReportedAsRetryableException() {
+
+        // Given
+        givenResponse(500, "");
+
+        // When
+        final var exception = assertThrows(CompletionException.class,
+                () -> serviceUnderTest.getDocumentMetadata(COMPANY_NUMBER, FILING_SOUGHT).join());
+
+        // Then
+        assertThat(exception.getCause(), is(instanceOf(RetryableException.class)));
+        assertThat(exception.getCause().getMessage(),
+                is("Error sending request to http://host" + FILING_URI + ": Internal Server Error"));
+    }
+
+    @Test
+    @DisplayName("getDocumentMetadata() reports a client error as a RetryableException")
+    void clientErrorReportedAsRetryableException() {
+
+        // Given
+        givenResponse(400, "bad request");
+
+        // When
+        final var exception = assertThrows(CompletionException.class,
+                () -> serviceUnderTest.getDocumentMetadata(COMPANY_NUMBER, FILING_SOUGHT).join());
+
+        // Then
+        assertThat(exception.getCause(), is(instanceOf(RetryableException.class)));
+        assertThat(exception.getCause().getMessage(), is("Error getting filing history document 1 for company number "
+                + COMPANY_NUMBER + ": 400 Bad Request\nbad request"));
+    }
+
+    @Test
+    @DisplayName("getDocumentMetadata() reports a Not Found response as a FilingHistoryDocumentNotFoundException")
+    void notFoundReportedAsFilingHistoryDocumentNotFoundException() {
+
+        // Given
+        givenResponse(404, "not found");
+
+        // When
+        final var exception = assertThrows(CompletionException.class,
+                () -> serviceUnderTest.getDocumentMetadata(COMPANY_NUMBER, FILING_SOUGHT).join());
+        final var repeated = assertThrows(CompletionException.class,
+                () -> serviceUnderTest.getDocumentMetadata(COMPANY_NUMBER, FILING_SOUGHT).join());
+
+        // Then
+        assertThat(exception.getCause(), is(instanceOf(FilingHistoryDocumentNotFoundException.class)));
+        assertThat(exception.getCause().getMessage(), is("Error getting filing history document 1 for company number "
+                + COMPANY_NUMBER + ": 404 Not Found\nnot found"));
+        assertThat(repeated.getCause(), is(instanceOf(FilingHistoryDocumentNotFoundException.class)));
+        verify(httpClient, times(1)).sendAsync(any(HttpRequest.class), any());
+    }
+
+    @Test
+    @DisplayName("getDocumentMetadata() reports a failure to send the request as a RetryableException")
+    void sendFailureReportedAsRetryableException() {
+
+        // Given
+        givenRequest();
+        when(httpClient.<byte[]>sendAsync(any(HttpRequest.class), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("IOException thrown by test")));
+
+        // When
+        final var exception = assertThrows(CompletionException.class,
+                () -> serviceUnderTest.getDocumentMetadata(COMPANY_NUMBER, FILING_SOUGHT).join());
+
+        // Then
+        assertThat(exception.getCause(), is(instanceOf(RetryableException.class)));
+        assertThat(exception.getCause().getMessage(),
+                is("Error sending request to http://host" + FILING_URI + ": IOException thrown by test"));
+    }
+
+    private void givenRequest() {
+        when(apiClientService.newAsyncRequest(eq(FILING_HISTORY_API), anyString())).thenAnswer(invocation ->
+                HttpRequest.newBuilder(URI.create("http://host" + invocation.getArgument(1))));
+        when(apiClientService.getAsyncHttpClient()).thenReturn(httpClient);
+    }
+
+    private void givenResponse(final int status, final String body) {
+        givenRequest();
+        when(httpClient.<byte[]>sendAsync(any(HttpRequest.class), any()))
+                .thenReturn(CompletableFuture.completedFuture(response));
+        when(response.statusCode()).thenReturn(status);
+        if (status >= 500) {
+            when(response.uri()).thenReturn(URI.create("http://host" + FILING_URI));
+        } else {
+            when(response.body()).thenReturn(body.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests the {@link SingleFlight} class.
+ */
+class SingleFlightTest {
+
+    private static final String KEY = "/company/00006400/filing-history/1";
+    private static final String RESULT = "/document/specimen";
+    private static final int THREADS = 8;
+
+    private final SingleFlight<String, String> singleFlightUnderTest = new SingleFlight<>();
+
+    @Test
+    @DisplayName("execute() makes a single call for concurrent callers with the same key, sharing its result")
+    void executeSharesResultOfSingleCall() throws Exception {
+
+        // Given
+        final var calls = new AtomicInteger();
+        final var release = new CountDownLatch(1);
+
+        // When
+        final List<String> results = runConcurrently(() -> {
+            calls.incrementAndGet();
+            await(release);
+            return RESULT;
+        }, release);
+
+        // Then
+        assertThat(calls.get(), is(1));
+        assertThat(results.size(), is(THREADS));
+        assertThat(results, everyItem(is(RESULT)));
+    }
+
+    @Test
+    @DisplayName("execute() throws the exception of a single call to every concurrent caller with the same key")
+    void executeSharesExceptionOfSingleCall() throws Exception {
+
+        // Given
+        final var calls = new AtomicInteger();
+        final var release = new CountDownLatch(1);
+        final var error = new RetryableException("Error sending request");
+
+        // When
+        final var outcomes = startConcurrently(() -> {
+            calls.incrementAndGet();
+            await(release);
+            throw error;
+        }, release);
+
+        // Then
+        assertThat(calls.get(), is(1));
+        for (final var outcome : outcomes) {
+            final var thrown = assertThrows(CompletionException.class, outcome::join);
+            assertThat(thrown.getCause(), is(sameInstance(error)));
+        }
+    }
+
+    @Test
+    @DisplayName("execute() makes the call afresh once the call in flight has completed")
+    void executeCallsAgainOnceComplete() {
+
+        // Given
+        final var calls = new AtomicInteger();
+
+        // When
+        singleFlightUnderTest.execute(KEY, () -> RESULT + calls.incrementAndGet());
+        final var result = singleFlightUnderTest.execute(KEY, () -> RESULT + calls.incrementAndGet());
+
+        // Then
+        assertThat(calls.get(), is(2));
+        assertThat(result, is(RESULT + 2));
+    }
+
+    private List<String> runConcurrently(final Supplier<String> call,
+                                         final CountDownLatch release) throws Exception {
+        final List<String> results = new ArrayList<>();
+        for (final var outcome : startConcurrently(call, release)) {
+            results.add(outcome.get(10, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+
+    /**
+     * Has {@link #THREADS} threads execute the call for the same key. The first thread makes the call, and the others
+     * are only started once it is in flight. The call is released only once every other thread is waiting on it.
+     */
+    private List<CompletableFuture<String>> startConcurrently(final Supplier<String> call,
+                                                              final CountDownLatch release)
+            throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final var inFlight = new CountDownLatch(1);
+            final Supplier<String> signallingCall = () -> {
+                inFlight.countDown();
+                return call.get();
+            };
+            final List<CompletableFuture<String>> outcomes = new ArrayList<>();
+            outcomes.add(CompletableFuture.supplyAsync(() -> singleFlightUnderTest.execute(KEY, signallingCall),
+                    executor));
+            assertThat(inFlight.await(10, TimeUnit.SECONDS), is(true));
+            final List<Thread> waiters = new CopyOnWriteArrayList<>();
+            for (int thread = 1; thread < THREADS; thread++) {
+                outcomes.add(CompletableFuture.supplyAsync(() -> {
+                    waiters.add(Thread.currentThread());
+                    return singleFlightUnderTest.execute(KEY, signallingCall);
+                }, executor));
+            }
+            while (waiters.size() < THREADS - 1
+                    || !waiters.stream().allMatch(waiter -> waiter.getState() == Thread.State.WAITING)) {
+                TimeUnit.MILLISECONDS.sleep(1);
+            }
+            release.countDown();
+            CompletableFuture.allOf(outcomes.toArray(CompletableFuture[]::new))
+                    .handle((result, ex) -> null)
+                    .join();
+            return outcomes;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+}
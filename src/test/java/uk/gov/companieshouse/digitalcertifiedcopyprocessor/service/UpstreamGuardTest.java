@@ -0,0 +1,271 @@
+package uk.gov.companieshouse.digitalcertifiedcopyprocessor.service;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.NonRetryableException;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.RetryableException;
+import uk.gov.companieshouse.digitalcertifiedcopyprocessor.exception.UpstreamUnavailableException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.UpstreamGuard.Upstream.DOCUMENT_API;
+import static uk.gov.companieshouse.digitalcertifiedcopyprocessor.service.UpstreamGuard.Upstream.FILING_HISTORY_API;
+
+/**
+ * Unit tests the {@link UpstreamGuard} class.
+ */
+class UpstreamGuardTest {
+
+    private static final int SLIDING_WINDOW_SIZE = 4;
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final UpstreamGuard guardUnderTest = new UpstreamGuard(50, SLIDING_WINDOW_SIZE, 60000, 1, 0, 0, 0,
+            new StaticListableBeanFactory(Map.of("meterRegistry", registry)).getBeanProvider(MeterRegistry.class));
+
+    @Test
+    @DisplayName("call() stops calling an API once enough calls to it have failed retryably")
+    void callStopsCallingFailingApi() {
+
+        // Given
+        final var calls = new AtomicInteger();
+        failCalls(FILING_HISTORY_API, calls);
+
+        // When
+        final var exception = assertThrows(UpstreamUnavailableException.class,
+                () -> guardUnderTest.call(FILING_HISTORY_API, calls::incrementAndGet));
+
+        // Then
+        assertThat(exception.getMessage(),
+                is("Circuit breaker for the filing-history-api is OPEN, not calling it."));
+        assertThat(calls.get(), is(SLIDING_WINDOW_SIZE));
+        assertThat(registry.get("resilience4j.circuitbreaker.state").tag("name", "filing-history-api")
+                .tag("state", "open").gauge().value(), is(1.0));
+    }
+
+    @Test
+    @DisplayName("call() keeps calling one API while the circuit breaker of the other is open")
+    void callKeepsCallingOtherApi() {
+
+        // Given
+        failCalls(FILING_HISTORY_API, new AtomicInteger());
+
+        // When
+        final var result = guardUnderTest.call(DOCUMENT_API, () -> "result");
+
+        // Then
+        assertThat(result, is("result"));
+        assertThat(guardUnderTest.getCircuitBreakers().get(DOCUMENT_API).getState(), is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    @DisplayName("call() does not count non-retryable failures against an API")
+    void callIgnoresNonRetryableFailures() {
+
+        // When
+        for (int call = 0; call < SLIDING_WINDOW_SIZE; call++) {
+            assertThrows(NonRetryableException.class, () -> guardUnderTest.call(DOCUMENT_API, () -> {
+                throw new NonRetryableException("Test exception");
+            }));
+        }
+
+        // Then
+        assertThat(guardUnderTest.getCircuitBreakers().get(DOCUMENT_API).getState(), is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    @DisplayName("call() does not count calls given up on by interrupting them against an API")
+    void callIgnoresInterruptedCalls() {
+
+        // When
+        for (int call = 0; call < SLIDING_WINDOW_SIZE; call++) {
+            assertThrows(RetryableException.class, () -> guardUnderTest.call(DOCUMENT_API, () -> {
+                Thread.currentThread().interrupt();
+                throw new RetryableException("Test exception");
+            }));
+            Thread.interrupted();
+        }
+
+        // Then
+        final var circuitBreaker = guardUnderTest.getCircuitBreakers().get(DOCUMENT_API);
+        assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.CLOSED));
+        assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls(), is(0));
+    }
+
+    @Test
+    @DisplayName("callAsync() refuses a call while the bulkhead of the API is full")
+    void callAsyncRefusesCallWhileBulkheadFull() {
+
+        // Given
+        final var inFlight = new CompletableFuture<String>();
+        guardUnderTest.callAsync(DOCUMENT_API, () -> inFlight);
+
+        // When
+        final var refused = guardUnderTest.callAsync(DOCUMENT_API, () -> CompletableFuture.completedFuture("result"));
+        inFlight.complete("result");
+        final var permitted = guardUnderTest.callAsync(DOCUMENT_API,
+                () -> CompletableFuture.completedFuture("result"));
+
+        // Then
+        final var exception = assertThrows(CompletionException.class, refused::join);
+        assertThat(exception.getCause(), is(instanceOf(UpstreamUnavailableException.class)));
+        assertThat(permitted.join(), is("result"));
+    }
+
+    @Test
+    @DisplayName("callAsync() refuses a call while the bulkhead of the API is full without waiting for a place")
+    void callAsyncDoesNotWaitForBulkhead() {
+
+        // Given
+        final var waitingGuard = bulkheadGuard(60000);
+        final var inFlight = new CompletableFuture<String>();
+        waitingGuard.callAsync(DOCUMENT_API, () -> inFlight);
+
+        // When
+        final var start = System.nanoTime();
+        final var refused = waitingGuard.callAsync(DOCUMENT_API, () -> CompletableFuture.completedFuture("result"));
+        final var elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        // Then
+        assertThat(refused.isCompletedExceptionally(), is(true));
+        assertThat(elapsed, is(lessThan(Duration.ofSeconds(5))));
+        final var exception = assertThrows(CompletionException.class, refused::join);
+        assertThat(exception.getCause(), is(instanceOf(UpstreamUnavailableException.class)));
+        inFlight.complete("result");
+    }
+
+    @Test
+    @DisplayName("call() waits for a place in the full bulkhead of the API")
+    void callWaitsForBulkhead() throws Exception {
+
+        // Given
+        final var waitingGuard = bulkheadGuard(60000);
+        final var inFlight = new CompletableFuture<String>();
+        waitingGuard.callAsync(DOCUMENT_API, () -> inFlight);
+
+        // When
+        final var waiting = CompletableFuture.supplyAsync(() -> waitingGuard.call(DOCUMENT_API, () -> "result"));
+        Thread.sleep(100);
+        final var doneWhileFull = waiting.isDone();
+        inFlight.complete("result");
+
+        // Then
+        assertThat(doneWhileFull, is(false));
+        assertThat(waiting.get(5, TimeUnit.SECONDS), is("result"));
+    }
+
+    @Test
+    @DisplayName("call() refuses a call once it has waited too long for a place in the full bulkhead of the API")
+    void callRefusesCallWhileBulkheadFull() {
+
+        // Given
+        final var waitingGuard = bulkheadGuard(50);
+        waitingGuard.callAsync(DOCUMENT_API, CompletableFuture::new);
+
+        // When
+        final var exception = assertThrows(UpstreamUnavailableException.class,
+                () -> waitingGuard.call(DOCUMENT_API, () -> "result"));
+
+        // Then
+        assertThat(exception.getMessage(), is("Too many calls to the document-api in flight, not calling it."));
+    }
+
+    @Test
+    @DisplayName("callAsync() counts calls completing with a retryable failure against an API")
+    void callAsyncCountsRetryableFailures() {
+
+        // When
+        for (int call = 0; call < SLIDING_WINDOW_SIZE; call++) {
+            guardUnderTest.callAsync(DOCUMENT_API,
+                    () -> CompletableFuture.failedFuture(new RetryableException("Test exception")));
+        }
+
+        // Then
+        assertThat(guardUnderTest.getCircuitBreakers().get(DOCUMENT_API).getState(), is(CircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    @DisplayName("call() refuses a call to an API that would wait too long for its rate limit")
+    void callRefusesCallBeyondRateLimit() {
+
+        // Given
+        final var rateLimitedGuard = rateLimitedGuard(1, 0);
+        rateLimitedGuard.call(DOCUMENT_API, () -> "result");
+
+        // When
+        final var exception = assertThrows(UpstreamUnavailableException.class,
+                () -> rateLimitedGuard.call(DOCUMENT_API, () -> "result"));
+
+        // Then
+        assertThat(exception.getMessage(), is("Rate limit of the document-api reached, not calling it."));
+        assertThat(rateLimitedGuard.call(FILING_HISTORY_API, () -> "result"), is("result"));
+    }
+
+    @Test
+    @DisplayName("callAsync() starts a call once the rate limit of the API permits it")
+    void callAsyncWaitsForRateLimit() {
+
+        // Given
+        final var rateLimitedGuard = rateLimitedGuard(2, 1000);
+        rateLimitedGuard.callAsync(DOCUMENT_API, () -> CompletableFuture.completedFuture("result")).join();
+        final var calls = new AtomicInteger();
+
+        // When
+        final var paced = rateLimitedGuard.callAsync(DOCUMENT_API,
+                () -> CompletableFuture.completedFuture(calls.incrementAndGet()));
+
+        // Then
+        assertThat(calls.get(), is(0));
+        assertThat(paced.join(), is(1));
+    }
+
+    @Test
+    @DisplayName("callAsync() refuses a call to an API that would wait too long for its rate limit")
+    void callAsyncRefusesCallBeyondRateLimit() {
+
+        // Given
+        final var rateLimitedGuard = rateLimitedGuard(1, 0);
+        rateLimitedGuard.callAsync(DOCUMENT_API, () -> CompletableFuture.completedFuture("result")).join();
+
+        // When
+        final var refused = rateLimitedGuard.callAsync(DOCUMENT_API,
+                () -> CompletableFuture.completedFuture("result"));
+
+        // Then
+        final var exception = assertThrows(CompletionException.class, refused::join);
+        assertThat(exception.getCause(), is(instanceOf(UpstreamUnavailableException.class)));
+    }
+
+    private UpstreamGuard rateLimitedGuard(final int limitPerSecond, final long maxWaitMillis) {
+        return new UpstreamGuard(50, SLIDING_WINDOW_SIZE, 60000, 20, 0, limitPerSecond, maxWaitMillis,
+                new StaticListableBeanFactory(Map.of("meterRegistry", registry)).getBeanProvider(MeterRegistry.class));
+    }
+
+    private UpstreamGuard bulkheadGuard(final long maxWaitMillis) {
+        return new UpstreamGuard(50, SLIDING_WINDOW_SIZE, 60000, 1, maxWaitMillis, 0, 0,
+                new StaticListableBeanFactory(Map.of("meterRegistry", registry)).getBeanProvider(MeterRegistry.class));
+    }
+
+    private void failCalls(final UpstreamGuard.Upstream upstream, final AtomicInteger calls) {
+        for (int call = 0; call < SLIDING_WINDOW_SIZE; call++) {
+            assertThrows(RetryableException.class, () -> guardUnderTest.call(upstream, () -> {
+                calls.incrementAndGet();
+                throw new RetryableException("Test exception");
+            }));
+        }
+    }
+}
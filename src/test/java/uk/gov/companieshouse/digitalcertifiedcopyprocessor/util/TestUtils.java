@@ -2,10 +2,16 @@ package uk.gov.companieshouse.digitalcertifiedcopyprocessor.util;
 
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
 import org.junit.contrib.java.lang.system.EnvironmentVariables;
 import org.springframework.core.env.Environment;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import uk.gov.companieshouse.itemorderedcertifiedcopy.ItemOrderedCertifiedCopy;
 
 import java.util.Map;
+import java.util.Optional;
 
 public class TestUtils {
 
@@ -54,6 +60,25 @@ public class TestUtils {
         variableValues.forEach(variables::set);
     }
 
+    /**
+     * Builds a record as consumed through the {@link ErrorHandlingDeserializer} when its value could not be
+     * deserialized.
+     * @param topic the topic the record was consumed from
+     * @param offset the offset of the record
+     * @param data the bytes that could not be deserialized
+     * @return a record with a <code>null</code> value and the deserialization exception header
+     */
+    public static ConsumerRecord<String, ItemOrderedCertifiedCopy> undeserialisableRecord(final String topic,
+                                                                                     final long offset,
+                                                                                     final byte[] data) {
+        final var headers = new RecordHeaders();
+        final var value = new ErrorHandlingDeserializer<ItemOrderedCertifiedCopy>((ignored, bytes) -> {
+            throw new SerializationException("Test exception");
+        }).deserialize(topic, headers, data);
+        return new ConsumerRecord<>(topic, 0, offset, ConsumerRecord.NO_TIMESTAMP, TimestampType.NO_TIMESTAMP_TYPE,
+                ConsumerRecord.NULL_SIZE, ConsumerRecord.NULL_SIZE, "key", value, headers, Optional.empty());
+    }
+
     public static int noOfRecordsForTopic(ConsumerRecords<?, ?> records, String topic) {
         int count = 0;
         for (ConsumerRecord<?, ?> ignored : records.records(topic)) {